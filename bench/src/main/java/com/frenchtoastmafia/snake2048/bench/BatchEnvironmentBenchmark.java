@@ -0,0 +1,93 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import com.frenchtoastmafia.snake2048.engine.GameRandom;
+import com.frenchtoastmafia.snake2048.tools.BatchEnvironment;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * Environment steps per second on one core: a BatchEnvironment of the given
+ * size stepped with random actions, by batch size. Random play dies within a
+ * few dozen ticks, so the auto-resets are part of the cost, as they are early
+ * in training. The actions are drawn in advance, so the policy costs nothing
+ * here.
+ *
+ * envSteps is the number to read: one per game per step() call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BatchEnvironmentBenchmark
+{
+    /** How many action arrays to cycle through */
+    private static final int ROUNDS = 64;
+
+    @Param({ "1", "256", "16384" })
+    public int               envs;
+
+    private BatchEnvironment batch;
+    private int[][]          actions;
+    private int              round;
+
+
+    // -------------------------------------------------------------------------
+    /**
+     * Counts the games stepped, so JMH reports them per second.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters
+    {
+        public long envSteps;
+
+
+        @Setup(Level.Iteration)
+        public void clear()
+        {
+            envSteps = 0;
+        }
+    }
+
+
+    @Setup
+    public void setUp()
+    {
+        batch = new BatchEnvironment(envs, 22, 38, 100000, 1);
+        GameRandom random = new GameRandom(1);
+        actions = new int[ROUNDS][envs];
+        for (int[] round : actions)
+        {
+            for (int i = 0; i < envs; i++)
+            {
+                // mostly keep going, as a player does
+                round[i] = random.nextInt(4) == 0 ? random.nextInt(4) : -1;
+            }
+        }
+    }
+
+
+    @Benchmark
+    public float[] step(Counters counters)
+    {
+        batch.step(actions[round]);
+        round = (round + 1) % ROUNDS;
+        counters.envSteps += envs;
+        return batch.rewards();
+    }
+}
@@ -0,0 +1,110 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import com.frenchtoastmafia.snake2048.engine.Direction;
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.Snake;
+
+// -------------------------------------------------------------------------
+/**
+ * Builds games in a steady state for the benchmarks. The board is split in
+ * two halves: the snake runs forever around a Hamiltonian cycle of the left
+ * half, so it never dies and never eats, and the loose boxes fill the right
+ * half, where the head never goes. Every tick therefore costs the same, no
+ * matter how many times JMH calls it.
+ */
+public final class BenchGames
+{
+    /** Width of each half of the board, in cells. */
+    public static final int HALF = 128;
+    public static final int COLS = HALF * 2;
+    public static final int ROWS = 128;
+
+
+    private BenchGames()
+    {
+        // static helpers only
+    }
+
+
+    /**
+     * @param snakeLength
+     *            how many tiles the snake should have; at most HALF * ROWS - 1
+     * @param looseBoxes
+     *            how many loose boxes to put on the right half
+     * @return a game with the snake on the cycle, moving, and nothing to eat
+     */
+    public static Game create(int snakeLength, int looseBoxes)
+    {
+        if (snakeLength < 1 || snakeLength >= HALF * ROWS)
+        {
+            throw new IllegalArgumentException("snakeLength " + snakeLength);
+        }
+        if (looseBoxes > HALF * ROWS)
+        {
+            throw new IllegalArgumentException("looseBoxes " + looseBoxes);
+        }
+
+        Game game = new Game(COLS, ROWS, 2048);
+        game.getBoard().clear();
+
+        // Walk the cycle from (0, 0) so cell i of the walk is cycle[i]; the
+        // head is the last cell walked and the tail the first.
+        int[] cols = new int[snakeLength];
+        int[] rows = new int[snakeLength];
+        int col = 0;
+        int row = 0;
+        for (int i = 0; i < snakeLength; i++)
+        {
+            cols[i] = col;
+            rows[i] = row;
+            int direction = cycleDirection(col, row);
+            col += Direction.dx(direction);
+            row += Direction.dy(direction);
+        }
+
+        Snake snake = game.getSnake();
+        snake.clear();
+        for (int i = snakeLength - 1; i >= 0; i--)
+        {
+            // alternate values so nothing ever merges
+            snake.appendTail(cols[i], rows[i], i % 2 == 0 ? 2 : 4);
+        }
+        snake.setMovingDirection(cycleDirection(cols[snakeLength - 1],
+            rows[snakeLength - 1]));
+
+        for (int i = 0; i < looseBoxes; i++)
+        {
+            game.getBoard().addBox(HALF + i % HALF, i / HALF, 8);
+        }
+        return game;
+    }
+
+
+    /**
+     * The direction to take from a cell on the cycle. Column 0 is the way
+     * back down; the other columns are swept in a serpentine, right along
+     * even rows and left along odd ones.
+     *
+     * @param col
+     *            a column in [0, HALF)
+     * @param row
+     *            a row in [0, ROWS)
+     * @return the direction that keeps the snake on the cycle
+     */
+    public static int cycleDirection(int col, int row)
+    {
+        if (col == 0)
+        {
+            return row > 0 ? Direction.DOWN : Direction.RIGHT;
+        }
+        if (row % 2 == 0)
+        {
+            return col < HALF - 1 ? Direction.RIGHT : Direction.UP;
+        }
+        if (col > 1 || row == ROWS - 1)
+        {
+            return Direction.LEFT;
+        }
+        return Direction.UP;
+    }
+}
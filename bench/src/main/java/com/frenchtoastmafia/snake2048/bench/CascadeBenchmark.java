@@ -0,0 +1,89 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import com.frenchtoastmafia.snake2048.engine.Direction;
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.Snake;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * A tick that eats a box and sets off a merge cascade, by the length of the
+ * cascade: 4 8 16 ... behind the head, and a 4 in front of it. Eating changes
+ * the game for good, so every op first copies a prepared game onto a scratch
+ * one; copy on its own is the baseline to subtract. The board is only as big
+ * as the snake needs, to keep that copy small.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CascadeBenchmark
+{
+    @Param({ "0", "8", "24" })
+    public int   cascade;
+
+    @Param({ "100", "1000" })
+    public int   snakeLength;
+
+    private Game prepared;
+    private Game scratch;
+
+
+    @Setup
+    public void setUp()
+    {
+        // the snake lies along the middle row of a narrow board, head to the
+        // right, with the box just in front of its head
+        prepared = new Game(snakeLength + 2, 3, 2048);
+        prepared.getBoard().clear();
+        Snake snake = prepared.getSnake();
+        snake.clear();
+        for (int i = 0; i < snakeLength; i++)
+        {
+            // the run 4 8 16 ... from the head, then big numbers that
+            // alternate so nothing past the run merges
+            int value;
+            if (i < cascade)
+            {
+                value = 1 << (i + 2);
+            }
+            else
+            {
+                value = i % 2 == 0 ? 1 << 30 : 1 << 29;
+            }
+            snake.appendTail(snakeLength - 1 - i, 1, value);
+        }
+        snake.setMovingDirection(Direction.RIGHT);
+        prepared.getBoard().addBox(snakeLength, 1, 4);
+        scratch = prepared.copy();
+    }
+
+
+    @Benchmark
+    public Game copy()
+    {
+        scratch.copyFrom(prepared);
+        return scratch;
+    }
+
+
+    @Benchmark
+    public boolean eat()
+    {
+        scratch.copyFrom(prepared);
+        return scratch.step(Direction.NONE);
+    }
+}
@@ -0,0 +1,92 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.Snake;
+import com.frenchtoastmafia.snake2048.tools.ObservationEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * A tick followed by bringing an observation of the game up to date, on the
+ * 256x128 board from BenchGames: update() rewrites only what the tick
+ * changed, encode() rewrites every plane, as re-rasterizing from the box
+ * lists would. The difference between either and TickBenchmark.step is what
+ * observing costs. "byte" writes a direct ByteBuffer and "float" a direct
+ * FloatBuffer in native order, as a tensor library would map it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ObservationBenchmark
+{
+    @Param({ "100", "10000" })
+    public int                 snakeLength;
+
+    @Param({ "byte", "float" })
+    public String              format;
+
+    private Game               game;
+    private ObservationEncoder encoder;
+
+
+    @Setup
+    public void setUp()
+    {
+        game = BenchGames.create(snakeLength, 100);
+        int size = ObservationEncoder.size(BenchGames.COLS, BenchGames.ROWS);
+        if (format.equals("float"))
+        {
+            encoder =
+                new ObservationEncoder(game, ByteBuffer.allocateDirect(4 * size)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer());
+        }
+        else
+        {
+            encoder =
+                new ObservationEncoder(game, ByteBuffer.allocateDirect(size));
+        }
+    }
+
+
+    @Benchmark
+    public boolean stepAndUpdate()
+    {
+        boolean alive = step();
+        encoder.update();
+        return alive;
+    }
+
+
+    @Benchmark
+    public boolean stepAndEncode()
+    {
+        boolean alive = step();
+        encoder.encode();
+        return alive;
+    }
+
+
+    private boolean step()
+    {
+        Snake snake = game.getSnake();
+        return game.step(BenchGames.cycleDirection(
+            snake.headCol(),
+            snake.headRow()));
+    }
+}
@@ -0,0 +1,98 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.GameView;
+import com.frenchtoastmafia.snake2048.engine.Strategy;
+import com.frenchtoastmafia.snake2048.tools.MonteCarloPlanner;
+import com.frenchtoastmafia.snake2048.tools.Strategies;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * What lookahead search costs: copying a game onto a scratch game, which a
+ * search does once per node, and the MonteCarloPlanner's whole search,
+ * reported as playouts (nodes) per second.
+ *
+ * "play" is a game the greedy strategy has played for a while on a phone
+ * sized board, which is what a bot sees. "large" is the 256x128 board from
+ * BenchGames with a 10000 segment snake and 10000 loose boxes, where the
+ * copy is dominated by the per-cell arrays.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PlannerBenchmark
+{
+    private static final int PLAYOUTS = 256;
+
+    @Param({ "play", "large" })
+    public String            state;
+
+    private Game             game;
+    private GameView         view;
+    private Game             scratch;
+    private MonteCarloPlanner planner;
+
+
+    @Setup
+    public void setUp()
+    {
+        if (state.equals("large"))
+        {
+            game = BenchGames.create(10000, 10000);
+        }
+        else
+        {
+            game = new Game(22, 38, 2048);
+            Strategy greedy = Strategies.create("greedy");
+            greedy.reset(1);
+            GameView greedyView = new GameView(game);
+            // greedy lives about a thousand ticks on this seed
+            while (game.getTick() < 500 && game.step(greedy.choose(greedyView)))
+            {
+                // keep playing
+            }
+            if (game.isOver())
+            {
+                throw new IllegalStateException("the greedy game died early");
+            }
+        }
+        view = new GameView(game);
+        scratch = game.copy();
+        planner = new MonteCarloPlanner(PLAYOUTS, 8);
+        planner.reset(1);
+    }
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Game copy()
+    {
+        scratch.copyFrom(game);
+        return scratch;
+    }
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(PLAYOUTS)
+    public int plan()
+    {
+        return planner.choose(view);
+    }
+}
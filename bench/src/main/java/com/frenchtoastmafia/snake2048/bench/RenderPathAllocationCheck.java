@@ -0,0 +1,91 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import java.lang.management.ManagementFactory;
+
+// -------------------------------------------------------------------------
+/**
+ * Fails if the headless frame path allocates. It plays RenderPathBenchmark's
+ * frame() at every one of its parameter points, warms it up until the JIT
+ * has compiled it, and then counts the bytes this thread allocates over
+ * FRAMES more frames. Any at all and it says where, and exits with status 1,
+ * so it can sit in a build or a CI job rather than be read off a JMH run.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar \
+ *     com.frenchtoastmafia.snake2048.bench.RenderPathAllocationCheck
+ * </pre>
+ *
+ * It needs a JVM that counts allocations per thread, as HotSpot does, and
+ * exits with status 2 on one that doesn't.
+ */
+public class RenderPathAllocationCheck
+{
+    private static final int   WARMUP_FRAMES = 200000;
+    private static final int   FRAMES        = 100000;
+    private static final int[] SIZES         = { 10, 1000 };
+
+
+    private RenderPathAllocationCheck()
+    {
+        // run through main()
+    }
+
+
+    /**
+     * @param args
+     *            ignored
+     */
+    public static void main(String[] args)
+    {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)ManagementFactory
+                .getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported())
+        {
+            System.err.println("this JVM can't count allocated bytes");
+            System.exit(2);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        boolean allocated = false;
+        for (int snakeLength : SIZES)
+        {
+            for (int looseBoxes : SIZES)
+            {
+                RenderPathBenchmark path = new RenderPathBenchmark();
+                path.snakeLength = snakeLength;
+                path.looseBoxes = looseBoxes;
+                path.setUp();
+
+                for (int i = 0; i < WARMUP_FRAMES; i++)
+                {
+                    path.frame();
+                }
+
+                // what reading the counter costs, taken off the total
+                long before = threads.getThreadAllocatedBytes(thread);
+                long overhead =
+                    threads.getThreadAllocatedBytes(thread) - before;
+                before = threads.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < FRAMES; i++)
+                {
+                    path.frame();
+                }
+                long bytes = threads.getThreadAllocatedBytes(thread) - before;
+                bytes -= overhead;
+
+                System.out.println("snakeLength=" + snakeLength
+                    + " looseBoxes=" + looseBoxes + ": " + bytes
+                    + " bytes over " + FRAMES + " frames");
+                allocated |= bytes > 0;
+            }
+        }
+
+        if (allocated)
+        {
+            System.err.println("the frame path allocates");
+            System.exit(1);
+        }
+    }
+}
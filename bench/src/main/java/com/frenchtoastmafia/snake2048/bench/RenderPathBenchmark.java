@@ -0,0 +1,75 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import com.frenchtoastmafia.snake2048.engine.Frame;
+import com.frenchtoastmafia.snake2048.engine.FrameExchange;
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.NumberLabel;
+import com.frenchtoastmafia.snake2048.engine.Snake;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * The headless half of a frame: a tick, capturing it into a Frame, handing
+ * it across the FrameExchange and updating the score labels, everything the
+ * game and render threads do per frame short of touching a Canvas.
+ *
+ * Run it with -prof gc; once warmed up gc.alloc.rate.norm should be 0 B/op
+ * (give or take the odd array growth as the snake gets longer).
+ * RenderPathAllocationCheck plays the same frames and fails if they
+ * allocate at all.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RenderPathBenchmark
+{
+    @Param({ "10", "1000" })
+    public int            snakeLength;
+
+    @Param({ "10", "1000" })
+    public int            looseBoxes;
+
+    private Game          game;
+    private FrameExchange frames;
+    private NumberLabel   scoreLabel;
+    private NumberLabel   hiscoreLabel;
+
+
+    @Setup
+    public void setUp()
+    {
+        game = BenchGames.create(snakeLength, looseBoxes);
+        frames = new FrameExchange();
+        scoreLabel = new NumberLabel("Score: ");
+        hiscoreLabel = new NumberLabel("Hiscore: ");
+    }
+
+
+    @Benchmark
+    public int frame()
+    {
+        Snake snake = game.getSnake();
+        game.step(BenchGames.cycleDirection(snake.headCol(), snake.headRow()));
+        frames.back().capture(game, game.getBoard().changes(), 0, game.getTick());
+        frames.publish();
+
+        Frame frame = frames.latest();
+        scoreLabel.set(frame.score());
+        hiscoreLabel.set(Math.max(frame.score(), frame.hiscore()));
+        return scoreLabel.length() + hiscoreLabel.length() + frame.boxCount();
+    }
+}
@@ -0,0 +1,79 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import com.frenchtoastmafia.snake2048.engine.Board;
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.Snake;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * The per-tick snake operations on their own, by snake length. These are the
+ * engine versions of Player.adjustPosition, mergeNumbersTogether, isDead and
+ * intersects; the last is now the board lookup for the head's cell. Run with
+ * -prof gc to get bytes allocated per op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SnakeBenchmark
+{
+    @Param({ "1", "10", "100", "1000", "10000" })
+    public int    snakeLength;
+
+    private Snake snake;
+    private Board board;
+
+
+    @Setup
+    public void setUp()
+    {
+        Game game = BenchGames.create(snakeLength, 0);
+        snake = game.getSnake();
+        board = game.getBoard();
+    }
+
+
+    @Benchmark
+    public void adjustPosition()
+    {
+        snake.setMovingDirection(BenchGames.cycleDirection(
+            snake.headCol(),
+            snake.headRow()));
+        snake.adjustPosition();
+    }
+
+
+    @Benchmark
+    public void mergeNumbersTogether()
+    {
+        snake.mergeNumbersTogether();
+    }
+
+
+    @Benchmark
+    public boolean isDead()
+    {
+        return snake.isDead();
+    }
+
+
+    @Benchmark
+    public int intersects()
+    {
+        return board.boxAt(snake.headCell());
+    }
+}
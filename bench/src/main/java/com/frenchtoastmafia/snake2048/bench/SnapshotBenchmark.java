@@ -0,0 +1,64 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.Snapshot;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * Saving a game to a Snapshot and restoring one, by snake length and the
+ * number of loose boxes. Restoring has to stay within a few milliseconds even
+ * for a 10000 segment snake, since it happens while the activity resumes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SnapshotBenchmark
+{
+    @Param({ "100", "10000" })
+    public int    snakeLength;
+
+    @Param({ "100", "10000" })
+    public int    looseBoxes;
+
+    private Game   game;
+    private byte[] snapshot;
+
+
+    @Setup
+    public void setUp()
+    {
+        game = BenchGames.create(snakeLength, looseBoxes);
+        snapshot = Snapshot.write(game);
+    }
+
+
+    @Benchmark
+    public byte[] write()
+    {
+        return Snapshot.write(game);
+    }
+
+
+    @Benchmark
+    public Game read()
+        throws IOException
+    {
+        return Snapshot.read(snapshot);
+    }
+}
@@ -0,0 +1,69 @@
+package com.frenchtoastmafia.snake2048.bench;
+
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.Snake;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// -------------------------------------------------------------------------
+/**
+ * One full game tick, the work GameThread.updateLogic() hands to the engine
+ * every frame, by snake length and by the number of loose boxes on the board.
+ * At 20 FPS the whole tick has a 50 ms budget.
+ *
+ * stepAndHash is the same tick followed by Game.stateHash(), as a replay or
+ * a networked session checking for desyncs would do on every tick. The hash
+ * is kept up to date incrementally, so the two should cost the same at every
+ * size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TickBenchmark
+{
+    @Param({ "1", "100", "10000" })
+    public int   snakeLength;
+
+    @Param({ "0", "100", "10000" })
+    public int   looseBoxes;
+
+    private Game game;
+
+
+    @Setup
+    public void setUp()
+    {
+        game = BenchGames.create(snakeLength, looseBoxes);
+    }
+
+
+    @Benchmark
+    public boolean step()
+    {
+        Snake snake = game.getSnake();
+        return game.step(BenchGames.cycleDirection(
+            snake.headCol(),
+            snake.headRow()));
+    }
+
+
+    @Benchmark
+    public long stepAndHash()
+    {
+        step();
+        return game.stateHash();
+    }
+}
@@ -1,238 +1,223 @@
 package com.frenchtoastmafia.snake2048;
 
 import android.graphics.*;
-import android.graphics.Paint.Style;
-import android.util.Log;
-
+import com.frenchtoastmafia.snake2048.engine.Cells;
+
+// -------------------------------------------------------------------------
+/**
+ * Draws numbered tiles. The game itself only knows integer grid cells; the
+ * pixel rectangle for a tile is worked out here, at draw time, from the cell
+ * and the current SIZE, so one Box can stamp out every tile in a frame.
+ *
+ * Each tile face is drawn once into an atlas, a strip of SIZE x SIZE slots
+ * with one slot per power of two, the first time that value is needed.
+ * After that, drawing a tile is a single bitmap blit. The atlas is thrown
+ * away and rebuilt if SIZE changes. The paints come from the shared
+ * TileStyle table, so a Box holds nothing but its atlas.
+ */
 public class Box
-    extends RectF
 {
-    private float x;
-    private float y;
     public static float SIZE = 48;
 
-    private int value;
+    private RectF       bounds     = new RectF();
+    private Rect        textBounds = new Rect();
+
+    /** The shared background paint, one of the TileStyle fills */
+    private final Paint fillPaint;
 
-    private Paint fillPaint;
-    private Paint textPaint;
+    /** The tile faces, slot n holding the face for 2^n */
+    private Bitmap      atlas;
+    private Canvas      atlasCanvas;
+    /** The width and height of a slot, in pixels; SIZE when it was built */
+    private int         atlasSize;
+    /** Bit n is set once the face for 2^n has been drawn into its slot */
+    private int         rendered;
+    private Rect        source     = new Rect();
+    private RectF       face       = new RectF();
 
 
     /**
      * Constructor for the box class
-     *
-     * @param x
-     *            the center x of the box
-     * @param y
-     *            the center y of the box
      */
-    public Box(float x, float y, int value)
+    public Box()
     {
-        super(x - SIZE / 2, y + SIZE / 2, x + SIZE / 2, y - SIZE / 2);
-
-        this.x = x;
-        this.y = y;
-        this.value = value;
-
-        fillPaint = new Paint();
-        fillPaint.setColor(Color.BLUE);
-        fillPaint.setStyle(Style.FILL);
-        textPaint = new Paint();
-        textPaint.setColor(Color.WHITE);
-        textPaint.setStyle(Style.FILL);
-        // textPaint.setTextSize((int)((60.0 / 48) * SIZE));
-        textPaint.setFakeBoldText(true);
-
-        adjustToGrid();
+        this(TileStyle.BOX_FILL);
     }
 
 
-    public void updateBounds()
-    {
-        set(x - SIZE / 2, y + SIZE / 2, x + SIZE / 2, y - SIZE / 2);
-        adjustToGrid();
-    }
-
-
-    public void draw(Canvas c, Paint fillPaint, Paint textPaint)
+    /**
+     * Create a new Box object that draws tiles on the given background.
+     *
+     * @param fillPaint
+     *            the background of the tiles; shared, so never changed
+     */
+    public Box(Paint fillPaint)
     {
-       c.drawRect(this, fillPaint);
-       if (value > 0) {
-           String sValue = ""+value;
-
-           // Calculate text size
-//           int testTextSize = 60;
-//           textPaint.setTextSize(testTextSize);
-//           Rect bounds = new Rect();
-//           textPaint.getTextBounds(sValue, 0, sValue.length(), bounds);
-//           float desiredWidth = width() - 4;
-//           float desiredHeight = height() - 4;
-//
-//           float desiredTextSize = Math.min(testTextSize * desiredWidth / bounds.width(), testTextSize * desiredHeight / bounds.height());
-//           textPaint.setTextSize(desiredTextSize);
-
-           setTextSize(60);
-           if (value >= 1000) {
-               setTextSize(20);
-           } else if (value >= 100) {
-               setTextSize(30);
-           } else if (value >= 10) {
-               setTextSize(40);
-           }
-
-           // Center the text in the box
-           Rect bounds = new Rect();
-           textPaint.getTextBounds(sValue, 0, sValue.length(), bounds);
-
-           float paddingX = 0.5f * (width() - bounds.width());
-           float paddingY = 0.5f * (height() - bounds.height());
-
-           c.drawText(sValue, left + paddingX, top, textPaint);
-       }
-    }
-
-    private void setTextSize(int textSize) {
-        double effectiveTextSize = textSize / 48.0 * SIZE;
-        if (value == 16) { Log.d("Setting text size", "" + effectiveTextSize); }
-        textPaint.setTextSize((int) effectiveTextSize); // e.g. if size is 24 (half of default 48), this will scale text down by half
+        this.fillPaint = fillPaint;
     }
 
-    public void draw(Canvas c) {
-        this.draw(c, this.fillPaint, this.textPaint);
-    }
 
-    // ----------------------------------------------------------
     /**
-     * @return the x
+     * Draws a tile centered on a grid cell.
+     *
+     * @param c
+     *            the canvas to draw on
+     * @param cell
+     *            the packed cell the tile sits on
+     * @param value
+     *            the number on the tile
      */
-    public float getX()
+    public void draw(Canvas c, int cell, int value)
     {
-        return this.centerX();
+        draw(
+            c,
+            Player.toPixel(Cells.col(cell)),
+            Player.toPixel(Cells.row(cell)),
+            value);
     }
 
 
-    // ----------------------------------------------------------
     /**
+     * Draws a tile centered on a point, which need not be the middle of a
+     * cell.
+     *
+     * @param c
+     *            the canvas to draw on
      * @param x
-     *            the x to set
+     *            the center x of the tile, in pixels
+     * @param y
+     *            the center y of the tile, in pixels
+     * @param value
+     *            the number on the tile
      */
-    public void setX(float x)
+    public void draw(Canvas c, float x, float y, int value)
     {
-        this.x = x;
-        updateBounds();
+        bounds.set(x - SIZE / 2, y - SIZE / 2, x + SIZE / 2, y + SIZE / 2);
+        if (value <= 0 || Integer.bitCount(value) != 1)
+        {
+            // not a power of two; never happens in a real game
+            drawFace(c, bounds, value);
+            return;
+        }
+
+        selectSlot(Integer.numberOfTrailingZeros(value), value);
+        c.drawBitmap(atlas, source, bounds, null);
     }
 
 
-    // ----------------------------------------------------------
     /**
-     * @return the y
+     * Works out the pixels a tile on a cell covers, with a pixel to spare on
+     * every side for antialiasing.
+     *
+     * @param cell
+     *            a packed cell
+     * @param out
+     *            receives the bounds
      */
-    public float getY()
+    public static void bounds(int cell, Rect out)
     {
-        return this.centerY();
+        float x = Player.toPixel(Cells.col(cell));
+        float y = Player.toPixel(Cells.row(cell));
+        out.set(
+            (int)Math.floor(x - SIZE / 2) - 1,
+            (int)Math.floor(y - SIZE / 2) - 1,
+            (int)Math.ceil(x + SIZE / 2) + 1,
+            (int)Math.ceil(y + SIZE / 2) + 1);
     }
 
 
-    // ----------------------------------------------------------
     /**
-     * @param y
-     *            the y to set
+     * @param cell
+     *            a packed cell
+     * @param area
+     *            an area of the screen, in pixels
+     * @return true if a tile on that cell would reach into the area
      */
-    public void setY(float y)
+    public static boolean intersects(int cell, Rect area)
     {
-        this.y = y;
-        updateBounds();
+        float x = Player.toPixel(Cells.col(cell));
+        float y = Player.toPixel(Cells.row(cell));
+        return x + SIZE / 2 >= area.left && x - SIZE / 2 <= area.right
+            && y + SIZE / 2 >= area.top && y - SIZE / 2 <= area.bottom;
     }
 
-    public int intersects(RectF collided)
+
+    /**
+     * Points source at the atlas slot for a value, drawing the slot first if
+     * it hasn't been yet.
+     */
+    private void selectSlot(int exponent, int value)
     {
-        int minimumIntersectIndex = -1;
-        float minimumIntersect = Float.MAX_VALUE;
-        if (this.bottom < collided.top
-            && this.bottom > collided.bottom
-            && ((this.right < collided.right && this.right > collided.left)
-                || (this.left > collided.left && this.left < collided.right) || (this.right > collided.right && this.left < collided.left)))
+        int size = Math.max(1, Math.round(SIZE));
+        if (size != atlasSize)
         {
-            float intersectBot = collided.top - this.bottom;
-            float intersectRight = this.right - collided.left;
-            float intersectLeft = collided.right - this.left;
-            if (intersectBot > 0 && intersectBot < minimumIntersect)
-            {
-                minimumIntersectIndex = 2;
-                minimumIntersect = intersectBot;
-            }
-            if (intersectRight > 0 && intersectRight < minimumIntersect)
+            // the tiles changed size; every face has to be drawn again
+            if (atlas != null)
             {
-                minimumIntersectIndex = 1;
-                minimumIntersect = intersectRight;
-            }
-            if (intersectLeft > 0 && intersectLeft < minimumIntersect)
-            {
-                minimumIntersectIndex = 3;
-                minimumIntersect = intersectLeft;
+                atlas.recycle();
+                atlas = null;
             }
+            atlasSize = size;
+            rendered = 0;
         }
-// else if (this.top < collided.top
-// && this.top > collided.bottom
-// && ((this.right < collided.right && this.right > collided.left) || (this.left
-// > collided.left && this.left < collided.right)))
-// {
-// minimumIntersectIndex = 0;
-// }
-        return minimumIntersectIndex;
-    }
-
-
-    public void fixIntersection(RectF other, int whichSide)
-    {
-        if (whichSide == 1)
+        if (atlas == null || (exponent + 1) * size > atlas.getWidth())
         {
-            float amount = other.left - this.right - 30.5f;
-            offset(amount, 0);
-
-            x += amount;
+            growAtlas(exponent + 1);
         }
-        else if (whichSide == 2) // bottom
-        {
-            float amount = other.top - this.bottom + 0.5f;
-            offset(0, amount);
 
-            y += amount;
-        }
-        else if(whichSide == 3)
+        int left = exponent * size;
+        if ((rendered & (1 << exponent)) == 0)
         {
-            float amount = other.right - this.left + 30.5f;
-            offset(amount, 0);
-            x += amount;
+            face.set(left, 0, left + size, size);
+            drawFace(atlasCanvas, face, value);
+            rendered |= 1 << exponent;
         }
-
-        adjustToGrid();
+        source.set(left, 0, left + size, size);
     }
 
-    private void adjustToGrid() {
-        float leftAdjust = this.left % 48;
-        float topAdjust = this.top % 48;
-
-        // TODO figure out why this gridding code was breaking everything
-        if (false) {
-            this.left -= leftAdjust;
-            this.right -= leftAdjust;
-            this.x -= leftAdjust;
 
-            this.top -= topAdjust;
-            this.bottom -= topAdjust;
-            this.y -= topAdjust;
+    /**
+     * Makes room for at least the given number of slots, keeping the faces
+     * already drawn.
+     */
+    private void growAtlas(int slots)
+    {
+        int current = atlas == null ? 0 : atlas.getWidth() / atlasSize;
+        int capacity = Math.min(32, Math.max(slots, Math.max(4, current * 2)));
+        Bitmap grown =
+            Bitmap.createBitmap(
+                capacity * atlasSize,
+                atlasSize,
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(grown);
+        if (atlas != null)
+        {
+            canvas.drawBitmap(atlas, 0, 0, null);
+            atlas.recycle();
         }
+        atlas = grown;
+        atlasCanvas = canvas;
     }
 
-    public int getValue() {
-        return value;
-    }
 
-    public void setValue(int value) {
-        this.value = value;
-    }
+    /**
+     * Draws a tile the slow way: the background, then the number measured and
+     * centered on it.
+     */
+    private void drawFace(Canvas c, RectF at, int value)
+    {
+       c.drawRect(at, fillPaint);
+       if (value > 0) {
+           TileStyle style = TileStyle.forValue(value);
+           String sValue = style.getLabel();
+           Paint textPaint = style.getTextPaint();
 
-    public Paint getTextPaint() {
-        return textPaint;
+           // Center the text in the box
+           textPaint.getTextBounds(sValue, 0, sValue.length(), textBounds);
+
+           float paddingX = 0.5f * (at.width() - textBounds.width());
+
+           c.drawText(sValue, at.left + paddingX, at.bottom, textPaint);
+       }
     }
 }
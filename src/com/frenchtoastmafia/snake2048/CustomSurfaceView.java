@@ -1,22 +1,30 @@
 package com.frenchtoastmafia.snake2048;
 
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.content.SharedPreferences.Editor;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
-import android.graphics.RectF;
+import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
-import com.google.gson.Gson;
-
+import com.frenchtoastmafia.snake2048.engine.ChangedCells;
+import com.frenchtoastmafia.snake2048.engine.Direction;
+import com.frenchtoastmafia.snake2048.engine.Frame;
+import com.frenchtoastmafia.snake2048.engine.FrameExchange;
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.InputJournal;
+import com.frenchtoastmafia.snake2048.engine.NumberLabel;
+import com.frenchtoastmafia.snake2048.engine.Snapshot;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // -------------------------------------------------------------------------
 /**
@@ -32,8 +40,10 @@ public class CustomSurfaceView
 
     // -------------------------------------------------------------------------
     /**
-     * This is the thread on which the game runs. The thread will be
-     * continuously updating the screen and redrawing the game.
+     * This is the thread on which the game runs. It advances the game in
+     * fixed ticks and publishes a Frame after each one; a separate
+     * RenderThread draws the newest frame, so slow drawing never delays a
+     * tick and a tick never holds up drawing.
      *
      * @author Andriy
      * @version Jan 10, 2014
@@ -42,11 +52,15 @@ public class CustomSurfaceView
         extends Thread
     {
         /*
-         * These are used for frame timing
+         * These are used for tick timing. The game advances in fixed ticks;
+         * frames are drawn as fast as the surface takes them, on their own
+         * thread.
          */
-        private final static int MAX_FPS                  = 20;
+        private final static int DEFAULT_TICK_RATE       = 20;
         private final static int MAX_FRAME_SKIPS          = 5;
-        private final static int FRAME_PERIOD             = 1000 / MAX_FPS;
+        /** How long a tick lasts, in nanoseconds */
+        private volatile long    tickPeriod               =
+                                                              1000000000L / DEFAULT_TICK_RATE;
 
         /** The drawable to use as the background of the animation canvas */
         private Bitmap           mBackgroundImage;
@@ -66,7 +80,7 @@ public class CustomSurfaceView
         private int              mCanvasWidth             = 1;
 
         /** Indicate whether the surface has been created & is ready to draw */
-        private boolean          mRun                     = false;
+        private volatile boolean mRun                     = false;
 
         /** Prevents multiple threads from accessing the canvas */
         private final Object     mRunLock                 = new Object();
@@ -76,17 +90,31 @@ public class CustomSurfaceView
         private SurfaceHolder    mSurfaceHolder;
 
         private Paint            mBlackPaint              = new Paint();
-        private Player           player;
-        private List<Box>        boxes                    =
-                                                              new ArrayList<Box>();
-
-        private int hiscore = 0;
+        private Game             game;
+        private Player           player                   = new Player();
+        /** Hands each tick from this thread to the render thread */
+        private final FrameExchange frames                = new FrameExchange();
+        /**
+         * The cells changed since the newest frame we know the renderer
+         * picked up, so a frame it never saw doesn't lose its changes
+         */
+        private ChangedCells     pending;
+        private Box              boxStamp                 = new Box();
+        /** How far down the score text reaches, in pixels */
+        private final static int SCORE_AREA_HEIGHT        = 116;
+        /** Only touched by the render thread; rewritten when a score changes */
+        private final NumberLabel scoreLabel              = new NumberLabel("Score: ");
+        private final NumberLabel hiscoreLabel            = new NumberLabel("Hiscore: ");
 
         /**
-         * Defines the N predominant column structures that govern where new
-         * boxes spawn.
+         * The last swipe, taken by the game thread on the next tick. Taking
+         * it and clearing it is one getAndSet(), so a swipe that lands in
+         * between isn't lost.
          */
-        private long             lastTime                 = System.currentTimeMillis();
+        private final AtomicInteger requestedDirection    =
+            new AtomicInteger(Direction.NONE);
+
+        private int hiscore = 0;
 
         // the amount the accelerometer value should be multiplied by before
         // being passed to the player object
@@ -96,6 +124,23 @@ public class CustomSurfaceView
 
         private Random           seededRandom;
 
+        /** High score and the rest; kept in memory, saved in the background */
+        private StatsStore       stats;
+        /** Where the game is saved when the activity goes away */
+        private SnapshotStore    snapshots;
+
+        /** Every game's seed and swipes, for replaying it; null if unavailable */
+        private InputJournal     journal;
+        /** The seed the current game was started from */
+        private long             gameSeed;
+        /** Whether the journal has the current game's START record yet */
+        private boolean          gameJournaled;
+        /**
+         * Set for a game restored from a save. The journal can't rebuild
+         * it, so none of it is recorded.
+         */
+        private boolean          gameUnjournaled;
+
         private boolean          triedToJump              = false;
 
         private float            spawnCutoff              = 0;
@@ -126,6 +171,67 @@ public class CustomSurfaceView
             // creates a seeded random object
             // TODO fill this in with a real seed later
             seededRandom = new Random(seed);
+
+            // shared with every other GameThread this process has made
+            stats = StatsStore.get(getContext());
+            snapshots = SnapshotStore.get(getContext());
+        }
+
+
+        /**
+         * Opens the input journal for this thread to append to, or leaves
+         * journal null if it can't be opened. Only a running thread holds
+         * it open, so a GameThread that is merely constructed never maps
+         * the file while the previous one is still writing to it.
+         */
+        private void openJournal()
+        {
+            File journalFile =
+                new File(getContext().getFilesDir(), "input.journal");
+            try
+            {
+                journal = InputJournal.open(journalFile);
+            }
+            catch (IOException e)
+            {
+                // most likely a journal from an older version: keep it for
+                // Replay under another name and start a new one
+                Log.w("GameThread", "starting a new input journal", e);
+                File old =
+                    new File(getContext().getFilesDir(), "input.journal.old");
+                old.delete();
+                try
+                {
+                    if (!journalFile.renameTo(old))
+                    {
+                        throw e;
+                    }
+                    journal = InputJournal.open(journalFile);
+                }
+                catch (IOException again)
+                {
+                    Log.w("GameThread", "playing without an input journal",
+                        again);
+                }
+            }
+        }
+
+
+        private void closeJournal()
+        {
+            if (journal == null)
+            {
+                return;
+            }
+            try
+            {
+                journal.close();
+            }
+            catch (IOException e)
+            {
+                Log.w("GameThread", "could not close the input journal", e);
+            }
+            journal = null;
         }
 
 
@@ -149,32 +255,138 @@ public class CustomSurfaceView
             }
         }
 
-        private long beginTime; // the time when the cycle began
+        /**
+         * Sets how many times a second the game advances. Drawing is not
+         * affected; it keeps up with the display.
+         *
+         * @param ticksPerSecond
+         *            the new tick rate
+         */
+        public void setTickRate(int ticksPerSecond)
+        {
+            tickPeriod = 1000000000L / ticksPerSecond;
+        }
 
 
         @Override
         public void run()
         {
-            long timeDiff; // the time it took for the cycle to execute
-            int sleepTime = 0; // ms to sleep (<0 if we're behind)
-            int framesSkipped; // number of frames being skipped
+            openJournal();
+            RenderThread renderer = new RenderThread();
+            renderer.start();
 
-            // spawn some boxes initially
-            spawnNewBox();
+            long nextTick = System.nanoTime();
 
             // while its running, which is determined by the mode constants
             // defined at the beginning
             while (mRun)
             {
-                Canvas c = null;
-                try
+                long period = tickPeriod;
+                long now = System.nanoTime();
+                if (now < nextTick)
                 {
-                    // get a reference to the canvas
-                    c = mSurfaceHolder.lockCanvas();
-                    synchronized (mSurfaceHolder)
+                    sleepQuietly(nextTick - now);
+                    continue;
+                }
+
+                // If we fell far behind (e.g. the thread was descheduled),
+                // drop the backlog rather than fast-forwarding through it
+                if (now - nextTick > MAX_FRAME_SKIPS * period)
+                {
+                    nextTick = now;
+                }
+
+                synchronized (mSurfaceHolder)
+                {
+                    updateLogic(); // moves everything without drawing it
+
+                    ChangedCells tickChanges = game.getBoard().changes();
+                    pending.addAll(tickChanges);
+                    frames.back().capture(game, pending, hiscore, nextTick);
+                    if (frames.publish())
                     {
-                        beginTime = System.currentTimeMillis();
-                        framesSkipped = 0;
+                        // the renderer has seen everything before this tick
+                        pending.clear();
+                        pending.addAll(tickChanges);
+                    }
+                }
+                nextTick += period;
+            }
+
+            try
+            {
+                renderer.join();
+            }
+            catch (InterruptedException e)
+            {
+                // the renderer stops on its own once mRun is false
+            }
+            closeJournal();
+        }
+
+
+        // -------------------------------------------------------------------------
+        /**
+         * Draws the newest frame the game thread has published, as often as
+         * the surface will take it. It never touches the live Game, so it
+         * needs no lock shared with the game thread.
+         *
+         * Only the dirty part of the screen is repainted: the cells the
+         * frame reports as changed, wherever the gliding snake was and now
+         * is, and the score text when a score changes. The surface keeps
+         * everything outside the dirty rectangle from the last frame.
+         */
+        private class RenderThread
+            extends Thread
+        {
+            private final Rect dirty           = new Rect();
+            private final Rect cellBounds      = new Rect();
+            private final Rect snakeExtent     = new Rect();
+            private final Rect lastSnakeExtent = new Rect();
+            /** The last frame drawn, to tell when a new one arrives */
+            private Frame      lastFrame;
+            private float      lastAlpha;
+            /** Set when the screen no longer shows a frame we drew */
+            private boolean    redrawAll       = true;
+
+
+            @Override
+            public void run()
+            {
+                while (mRun)
+                {
+                    Frame frame = frames.latest();
+
+                    // how far we are into the next tick, for interpolation
+                    float alpha =
+                        (System.nanoTime() - frame.getTime())
+                            / (float)tickPeriod;
+                    alpha = Math.max(0, Math.min(1, alpha));
+
+                    findDirtyRegion(frame, alpha);
+                    if (dirty.isEmpty())
+                    {
+                        // nothing to repaint until the next tick
+                        sleepQuietly(tickPeriod / 4);
+                        continue;
+                    }
+
+                    Canvas c = null;
+                    try
+                    {
+                        // get a reference to the canvas; this waits for the
+                        // display, which is what paces the loop. The surface
+                        // may grow the dirty rectangle; we repaint whatever
+                        // it ends up as.
+                        c = mSurfaceHolder.lockCanvas(dirty);
+                        if (c == null)
+                        {
+                            // the surface isn't ready yet; don't spin on it,
+                            // and don't trust what it holds once it is
+                            redrawAll = true;
+                            sleepQuietly(tickPeriod);
+                            continue;
+                        }
                         /*
                          * Critical section. Do not allow mRun to be set false
                          * until we are sure all canvas draw operations are
@@ -186,108 +398,137 @@ public class CustomSurfaceView
                             // if its running, update the canvas through doDraw
                             if (mRun)
                             {
-                                updateLogic(); // moves everything without
-                                // drawing it yet (basically a buffer)
-                                doDraw(c); // renders everything
-
-                                timeDiff =
-                                    System.currentTimeMillis() - beginTime;
-                                sleepTime = (int)(FRAME_PERIOD - timeDiff);
-
-                                if (sleepTime > 0)
-                                {
-                                    try
-                                    {
-                                        Thread.sleep(sleepTime);
-                                    }
-                                    catch (InterruptedException e)
-                                    {
-                                        // this should probably never fail...
-                                    }
-                                }
-                                while (sleepTime < 0
-                                    && framesSkipped < MAX_FRAME_SKIPS)
-                                {
-                                    // catch up, so update without rendering
-                                    updateLogic();
-                                    sleepTime += FRAME_PERIOD;
-                                    framesSkipped++;
-                                }
+                                doDraw(c, frame, alpha, dirty); // renders everything
+                                lastFrame = frame;
+                                lastSnakeExtent.set(snakeExtent);
+                                lastAlpha = alpha;
+                                redrawAll = false;
                             }
                         }
                     }
+                    finally
+                    {
+                        // do this in a finally so that if an exception is
+                        // thrown during the above, we don't leave the Surface
+                        // in an inconsistent state
+                        if (c != null)
+                        {
+                            mSurfaceHolder.unlockCanvasAndPost(c);
+                        }
+                    }
                 }
-                finally
+            }
+
+
+            /**
+             * Works out which part of the screen drawing this frame changes,
+             * into dirty.
+             */
+            private void findDirtyRegion(Frame frame, float alpha)
+            {
+                boolean newFrame = frame != lastFrame;
+                player.extent(frame, alpha, snakeExtent);
+                if (redrawAll || (newFrame && frame.allChanged()))
                 {
-                    // do this in a finally so that if an exception is thrown
-                    // during the above, we don't leave the Surface in an
-                    // inconsistent state
-                    if (c != null)
+                    dirty.set(0, 0, mCanvasWidth, mCanvasHeight);
+                    return;
+                }
+
+                dirty.setEmpty();
+                if (newFrame)
+                {
+                    for (int i = 0; i < frame.changedCount(); i++)
                     {
-                        mSurfaceHolder.unlockCanvasAndPost(c);
+                        Box.bounds(frame.changedCell(i), cellBounds);
+                        dirty.union(cellBounds);
                     }
                 }
+                if (newFrame || alpha != lastAlpha)
+                {
+                    // the snake may have moved anywhere inside its extent
+                    dirty.union(snakeExtent);
+                    dirty.union(lastSnakeExtent);
+                }
+                if (frame.score() != scoreLabel.number()
+                    || Math.max(frame.score(), frame.hiscore()) != hiscoreLabel
+                        .number())
+                {
+                    dirty.union(0, 0, mCanvasWidth, SCORE_AREA_HEIGHT);
+                }
+            }
+        }
+
+
+        /**
+         * Sleeps without complaining about interruptions.
+         *
+         * @param nanos
+         *            how long to sleep, in nanoseconds
+         */
+        private void sleepQuietly(long nanos)
+        {
+            try
+            {
+                Thread.sleep(nanos / 1000000L, (int)(nanos % 1000000L));
+            }
+            catch (InterruptedException e)
+            {
+                // this should probably never fail...
             }
         }
 
 
         /**
          * Restores game state. Typically called when the Activity is being restored after having been previously
-         * destroyed.
+         * destroyed. If the saved game can't be read, a new one is started.
          */
         public synchronized void restoreState()
         {
             synchronized (mSurfaceHolder)
             {
-                Gson g = new Gson();
-                SharedPreferences prefs =
-                    getContext()
-                        .getSharedPreferences(MainActivity.PREF_FILE, 0);
-                Editor e = prefs.edit();
                 setSurfaceSize(mCanvasWidth, mCanvasHeight);
-//                player =
-//                    g.fromJson(prefs.getString("player", "null"), Player.class);
-//                ArrayList<Box> boxes = g.fromJson(prefs.getString("playerBoxes", "null"), ArrayList.class);
-//                if (boxes == null) {
-//                    System.out.println("BOXES NULL");
-//                }
-//                player.setBoxes(boxes);
-//                if (player == null)
-//                    System.out.println("PLAYER NULL");
-//                triedToJump = prefs.getBoolean("triedToJump", false);
-//                blocksAbovePlayer = prefs.getInt("blocksAbovePlayer", 0);
-                firstTime = prefs.getBoolean("firstTime", false);
-                e.putBoolean("gameSaved", false);
-                e.commit();
+                try
+                {
+                    useGame(Snapshot.read(snapshots.load()));
+                    // Replay only rebuilds games from their seed, and the
+                    // journal may lack this game's start or hold ticks
+                    // played after the save, so the rest of it goes
+                    // unrecorded
+                    gameJournaled = false;
+                    gameUnjournaled = true;
+                }
+                catch (IOException e)
+                {
+                    Log.w("restoreState", "could not restore the saved game", e);
+                }
+                snapshots.delete();
             }
         }
 
 
         /**
-         * Dump game state to the provided Bundle. Typically called when the
-         * Activity is being suspended.
+         * Saves the game so restoreState() can pick it up again. Typically
+         * called when the Activity is being suspended. Only the snapshot is
+         * taken here; it is written to disk in the background.
          */
         public synchronized void saveState()
         {
+            byte[] snapshot;
             synchronized (mSurfaceHolder)
             {
-                Gson g = new Gson();
-                SharedPreferences prefs =
-                    getContext()
-                        .getSharedPreferences(MainActivity.PREF_FILE, 0);
-                Editor e = prefs.edit();
-                // System.out.println(g.toJson(player, Player.class));
-                e.putString("player", g.toJson(player, Player.class));
-                e.putString("playerBoxes", g.toJson(player.getBoxes(), ArrayList.class));
-// Type listType = new TypeToken<List<Box>>() {
-// }.getType();
-// e.putString("boxes", g.toJson(boxes, listType));
-                e.putBoolean("triedToJump", triedToJump);
-                e.putInt("blocksAbovePlayer", blocksAbovePlayer);
-                e.putBoolean("firstTime", firstTime);
-                e.putBoolean("gameSaved", true);
-                e.commit();
+                snapshot = Snapshot.write(game);
             }
+            snapshots.save(snapshot);
+            stats.flush();
+        }
+
+
+        /**
+         * @return true if there is a saved game for restoreState()
+         */
+        public boolean hasSavedGame()
+        {
+            return snapshots.exists();
         }
 
 
@@ -324,8 +565,7 @@ public class CustomSurfaceView
             // synchronized to make sure these all change atomically
             synchronized (mSurfaceHolder)
             {
-                SharedPreferences prefs = getContext().getSharedPreferences("com.frenchtoastmafia.snake2048", 0);
-                hiscore = prefs.getInt("hiscore", 0);
+                hiscore = stats.getHiscore();
 
                 mCanvasWidth = width;
                 mCanvasHeight = height;
@@ -343,14 +583,14 @@ public class CustomSurfaceView
 // height,
 // true);
 
-                float cx = mCanvasWidth / 2;
-                cx -= cx % 48;
-                float cy = mCanvasHeight / 2;
-                cy -= cy % 48;
-
-                Log.d("Player create", String.format("%f, %f // %f, %f" , cx, cy, cx % 48, cy % 48));
-
-                player = new Player(new RectF(cx, cy, cx + 48, cy + 48), mCanvasWidth, mCanvasHeight);
+                gameSeed = seededRandom.nextLong();
+                useGame(
+                    new Game(
+                        mCanvasWidth / Player.VELOCITY,
+                        mCanvasHeight / Player.VELOCITY,
+                        gameSeed));
+                gameJournaled = false;
+                gameUnjournaled = false;
 
                 mBlackPaint.setColor(Color.BLACK);
                 mBlackPaint.setStyle(Style.FILL);
@@ -362,6 +602,21 @@ public class CustomSurfaceView
         }
 
 
+        /**
+         * Switches to another game, and has the whole screen redrawn for it.
+         * The caller must hold mSurfaceHolder.
+         */
+        private void useGame(Game newGame)
+        {
+            game = newGame;
+            pending =
+                new ChangedCells(
+                    game.getBoard().getCols(),
+                    game.getBoard().getRows());
+            pending.markAll();
+        }
+
+
         /**
          * Resumes from a pause.
          */
@@ -377,131 +632,113 @@ public class CustomSurfaceView
 
         public void restart()
         {
-            SharedPreferences prefs =
-                getContext().getSharedPreferences(MainActivity.PREF_FILE, 0);
-            Editor e = prefs.edit();
-            e.putBoolean("gameSaved", false);
-            e.commit();
-
-            boxes.clear();
-            spawnNewBox();
+            snapshots.delete();
+
             firstTime = true;
-            player.restart();
             triedToJump = false;
             blocksAbovePlayer = 0;
             maxBlockHeight = mCanvasHeight;
+            requestedDirection.set(Direction.NONE);
             // use new seed
             seededRandom = new Random((long)(Long.MAX_VALUE * Math.random()));
-            lastTime = System.currentTimeMillis();
+            gameSeed = seededRandom.nextLong();
+            game.restart(gameSeed);
+            gameJournaled = false;
+            gameUnjournaled = false;
         }
 
         private void updateLogic()
         {
-            if (firstTime)
-            {
-                player.head()
-                    .offsetTo(
-                        mCanvasWidth / 2,
-                        mCanvasHeight / 2);
-                // generateBoxes(mCanvasHeight, mCanvasHeight * 40);
-            }
-
             firstTime = false;
-            player.adjustPosition((int)(System.currentTimeMillis() - lastTime));
-            ListIterator<Box> boxListIterator = boxes.listIterator();
-            boolean boxMustBeSpawned = false;
-            while(boxListIterator.hasNext())
-            {
-                Box possibleCollisionBlock = boxListIterator.next();
-
-                // Check if the player's head has collided with the block, if so, do combination logic
-                // And generate another block
-                int collisionIndicator = player.intersects(possibleCollisionBlock);
 
-                if (collisionIndicator > -1) {
-                    player.fixIntersection(possibleCollisionBlock, collisionIndicator);
-                    boxListIterator.remove();
+            int direction = requestedDirection.getAndSet(Direction.NONE);
 
-                    boxMustBeSpawned = true;
-                }
-
-                // With a low probability, remove a random block from the board and place another one
-                // TODO implement
+            boolean alive = game.step(direction);
+            journalTick(direction, alive);
+            if (!alive)
+            {
+                // memory only; the stats reach the disk in the background
+                stats.recordGame(game.score(), game.getSnake().maxBoxValue());
+                hiscore = stats.getHiscore();
+                restart();
             }
+        }
 
-            if (boxMustBeSpawned) {
-                for (int i = 0; i < (seededRandom.nextInt(3) / 2) + 1; i++) { // 1/3 chance of spawning 2 blocks -- 1 + rand[0,3)/2
-                    spawnNewBox();
-                }
-            }
 
-            if (player.isDead())
+        /**
+         * Records the tick just played in the input journal: the game's start
+         * if this was its first tick, the swipe if there was one, and the
+         * end if the snake died. Games that are never stepped, such as one
+         * replaced by a restored save, are never recorded, and neither is
+         * the restored game itself.
+         */
+        private void journalTick(int direction, boolean alive)
+        {
+            if (journal == null || gameUnjournaled)
             {
-                SharedPreferences prefs = getContext().getSharedPreferences("com.frenchtoastmafia.snake2048", 0);
-                if (player.score() > hiscore) {
-                    SharedPreferences.Editor editor = prefs.edit();
-                    editor.putInt("hiscore", player.score());
-                    editor.commit();
-                    hiscore = player.score();
-                }
-                restart();
                 return;
             }
-
-            lastTime = System.currentTimeMillis();
-        }
-
-        private void spawnNewBox() {
-            // TODO make this not spawn boxes near the edge--or should it?
-            double x = Math.random() * mCanvasWidth;
-            double y = Math.random() * mCanvasHeight;
-
-            // Don't spawn at edges--this is annoying
-            if (x < 48) { x = 48; }
-            if (x > mCanvasWidth - 48) { x = mCanvasWidth - 48; }
-            if (y < 48) { y = 48; }
-            if (y > mCanvasHeight - 48) { y = mCanvasHeight - 48; }
-
-            x -= x % 48;
-            y -= y % 48; // This grids the blocks. or at least it should. But it doesn't.
-
-            System.out.println(String.format("%f, %f, %f, %f", x, y, x % 48, y % 48));
-
-            int value = 2;
-            int valueRand = seededRandom.nextInt(16);
-            if (valueRand <= 6) {
-                value = 2;
-            } else if (valueRand <= 11 && player.maxBoxValue() > 2) {
-                value = 4;
-            } else if (valueRand <= 14 && player.maxBoxValue() > 4) { // don't spawn only 8s when you have a 2/4 in your snake
-                value = 8;
-            } else if (player.maxBoxValue() > 8) {
-                value = 16;
+            try
+            {
+                if (!gameJournaled)
+                {
+                    journal.startGame(
+                        game.getBoard().getCols(),
+                        game.getBoard().getRows(),
+                        gameSeed);
+                    gameJournaled = true;
+                }
+                if (direction != Direction.NONE)
+                {
+                    journal.input(game.getTick(), direction);
+                }
+                if (!alive)
+                {
+                    journal.endGame(game);
+                }
+            }
+            catch (IOException e)
+            {
+                Log.w("GameThread", "input journal full; no longer recording", e);
+                journal = null;
             }
-
-            boxes.add(new Box((float)x, (float)y, value));
         }
 
 
         /**
          * Draws the player snake and number blocks to the provided canvas.
+         *
+         * @param frame
+         *            the tick to draw
+         * @param alpha
+         *            how far the game is between the last tick and the next,
+         *            from 0 to 1; the snake is drawn that far along its move
+         * @param dirty
+         *            the part of the canvas being repainted; boxes outside it
+         *            are skipped
          */
-        private void doDraw(Canvas canvas)
+        private void doDraw(Canvas canvas, Frame frame, float alpha, Rect dirty)
         {
             // Log.d("doDraw", "drawing");
             // Draw the background image. Operations on the Canvas accumulate
             // so this is like clearing the screen.
             // canvas.drawBitmap(mBackgroundImage, 0, 0, null);
             canvas.drawColor(Color.WHITE);
-            player.draw(canvas);
+            player.draw(canvas, frame, alpha);
 
-            for (Box box : boxes)
+            for (int i = 0; i < frame.boxCount(); i++)
             {
-                box.draw(canvas);
+                int cell = frame.boxCell(i);
+                if (Box.intersects(cell, dirty))
+                {
+                    boxStamp.draw(canvas, cell, frame.boxValue(i));
+                }
             }
 
-            canvas.drawText(String.format("Score: %d", player.score()), 50, 50, mBlackPaint);
-            canvas.drawText(String.format("Hiscore: %d", Math.max(player.score(), hiscore)), 50, 100, mBlackPaint);
+            scoreLabel.set(frame.score());
+            hiscoreLabel.set(Math.max(frame.score(), frame.hiscore()));
+            canvas.drawText(scoreLabel.chars(), 0, scoreLabel.length(), 50, 50, mBlackPaint);
+            canvas.drawText(hiscoreLabel.chars(), 0, hiscoreLabel.length(), 50, 100, mBlackPaint);
         }
 
         /**
@@ -541,11 +778,8 @@ public class CustomSurfaceView
                     angle = (angle + 2 * Math.PI) % (2 * Math.PI); // make it positive: the angle was in [-pi, pi] before
                     int direction = (int)(angle / (Math.PI/2)); // finally, get the direction as an integer compatible with the Player class
 
-                    if (player.getMovingDirection() == -1 || (direction - player.getMovingDirection()) % 2 != 0) {
-                        // don't let the player move opposite to his previous direction
-                        // but if his previous direction was -1 (not moving) anything goes
-                        player.setMovingDirection(direction);
-                    }
+                    // the game decides on its next tick whether this turn is allowed
+                    requestedDirection.set(direction);
                     break;
             }
             return true;
@@ -1,6 +1,5 @@
 package com.frenchtoastmafia.snake2048;
 
-import android.content.SharedPreferences;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
@@ -51,11 +50,7 @@ public class MainActivity
         screenContainer = (CustomSurfaceView)findViewById(R.id.screenContainer);
         gameThread = screenContainer.getThread();
 
-        SharedPreferences prefs =
-            getSharedPreferences(MainActivity.PREF_FILE, 0);
-        // prefs.edit().putBoolean("gameSaved", false).commit();
-
-        if (prefs.getBoolean("gameSaved", false))
+        if (gameThread.hasSavedGame())
         {
             screenContainer.post(new Runnable() {
 
@@ -0,0 +1,242 @@
+package com.frenchtoastmafia.snake2048;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+// -------------------------------------------------------------------------
+/**
+ * Keeps the saved game in a file. Saving and deleting happen on a background
+ * thread of their own, in the order they were asked for, so neither the game
+ * thread nor the UI thread ever waits on the disk. A save is written to a
+ * temporary file and renamed over the old one, so a crash part way through
+ * leaves the previous save intact rather than half a file.
+ *
+ * There is one store per process, from get(), with one writer thread, so
+ * the saves and deletes of every game thread the activity ever makes are
+ * written in order. Loading the saved game waits for them, so a save queued
+ * by a game thread that is going away is found by the next one. Whether
+ * there is a saved game is kept in memory, set as each save or delete is
+ * queued, so asking never waits on the writer or the disk; only get() looks
+ * at the disk, once per process.
+ */
+public class SnapshotStore
+{
+    private static SnapshotStore  instance;
+
+    private final File            file;
+    private final ExecutorService writer;
+    /** Whether the last save or delete queued was a save */
+    private volatile boolean      saved;
+
+
+    /**
+     * @param context
+     *            any context of the app
+     * @return the app's saved game store
+     */
+    public static synchronized SnapshotStore get(Context context)
+    {
+        if (instance == null)
+        {
+            instance =
+                new SnapshotStore(new File(context.getApplicationContext()
+                    .getFilesDir(), "game.snapshot"));
+        }
+        return instance;
+    }
+
+
+    /**
+     * Create a new SnapshotStore object.
+     *
+     * @param file
+     *            where the saved game lives
+     */
+    private SnapshotStore(File file)
+    {
+        this.file = file;
+        saved = file.exists();
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "SnapshotStore");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+
+    /**
+     * Replaces the saved game, in the background.
+     *
+     * @param snapshot
+     *            the bytes to save; must not be changed afterwards
+     */
+    public synchronized void save(final byte[] snapshot)
+    {
+        saved = true;
+        writer.execute(new Runnable() {
+            public void run()
+            {
+                try
+                {
+                    writeAtomically(file, snapshot);
+                }
+                catch (IOException e)
+                {
+                    Log.e("SnapshotStore", "could not save the game", e);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Forgets the saved game, in the background.
+     */
+    public synchronized void delete()
+    {
+        saved = false;
+        writer.execute(new Runnable() {
+            public void run()
+            {
+                file.delete();
+            }
+        });
+    }
+
+
+    /**
+     * Doesn't block, so it is safe on the UI thread. A save that fails to
+     * write still counts, and load() then throws.
+     *
+     * @return true if there will be a saved game once every save and delete
+     *         asked for so far has been written
+     */
+    public boolean exists()
+    {
+        return saved;
+    }
+
+
+    /**
+     * Reads the saved game, once every save and delete asked for so far has
+     * been written.
+     *
+     * @return the saved bytes
+     * @throws IOException
+     *             if there is no saved game or it can't be read
+     */
+    public byte[] load()
+        throws IOException
+    {
+        awaitWrites();
+        return readFully(file);
+    }
+
+
+    /**
+     * Waits until the writer has caught up with everything queued so far.
+     */
+    private void awaitWrites()
+    {
+        try
+        {
+            writer.submit(new Runnable() {
+                public void run()
+                {
+                    // only here to be waited for
+                }
+            }).get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            // an empty task doesn't throw
+        }
+    }
+
+
+    /**
+     * Reads a whole file.
+     *
+     * @param file
+     *            the file to read
+     * @return its contents
+     * @throws IOException
+     *             if it doesn't exist or can't be read
+     */
+    static byte[] readFully(File file)
+        throws IOException
+    {
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] contents = new byte[(int)file.length()];
+            int read = 0;
+            while (read < contents.length)
+            {
+                int n = in.read(contents, read, contents.length - read);
+                if (n < 0)
+                {
+                    throw new IOException(file + " shrank while reading");
+                }
+                read += n;
+            }
+            return contents;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+
+    /**
+     * Replaces a file's contents all at once: the bytes go to a temporary
+     * file next to it, which is synced and then renamed over it, so a crash
+     * part way through leaves the old contents intact.
+     *
+     * @param file
+     *            the file to replace
+     * @param contents
+     *            what to put in it
+     * @throws IOException
+     *             if it can't be written
+     */
+    static void writeAtomically(File file, byte[] contents)
+        throws IOException
+    {
+        File temporary = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temporary);
+        try
+        {
+            out.write(contents);
+            out.flush();
+            // make sure the bytes are on disk before the rename makes them
+            // the new contents
+            out.getFD().sync();
+        }
+        finally
+        {
+            out.close();
+        }
+        if (!temporary.renameTo(file))
+        {
+            throw new IOException("could not rename " + temporary + " to "
+                + file);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.frenchtoastmafia.snake2048;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// -------------------------------------------------------------------------
+/**
+ * The player's statistics: high score, games played, the biggest tile ever
+ * made, and the score and biggest tile of each of the last HISTORY games.
+ *
+ * Everything is read from and written to memory; the game thread only ever
+ * touches that. Changes are written to disk in the background, batched: the
+ * first change after a write schedules the next write FLUSH_DELAY later, and
+ * every change until then rides along with it.
+ *
+ * There is one store per process, from get(), so that however many times
+ * the activity and its game thread are recreated, the file is only read
+ * once and only one thread ever writes it.
+ *
+ * The file is big-endian: a version byte, then ints for the high score,
+ * games played, biggest tile and number of games in the history, then a
+ * score and a biggest tile for each of those games, oldest first.
+ */
+public class StatsStore
+{
+    /** How many recent games are remembered */
+    public static final int               HISTORY     = 1000;
+
+    private static final byte             VERSION     = 1;
+    private static final long             FLUSH_DELAY = 2000;
+
+    private static StatsStore             instance;
+
+    private final File                    file;
+    private final ScheduledExecutorService writer;
+
+    private int                           hiscore;
+    private int                           gamesPlayed;
+    private int                           bestTile;
+    /** The history, as a ring of HISTORY entries starting at historyStart */
+    private final int[]                   scores      = new int[HISTORY];
+    private final int[]                   tiles       = new int[HISTORY];
+    private int                           historyStart;
+    private int                           historySize;
+    private boolean                       flushScheduled;
+
+    private final Runnable                flush       = new Runnable() {
+        public void run()
+        {
+            byte[] contents = serialize();
+            try
+            {
+                SnapshotStore.writeAtomically(file, contents);
+            }
+            catch (IOException e)
+            {
+                Log.e("StatsStore", "could not save the stats", e);
+            }
+        }
+    };
+
+
+    /**
+     * @param context
+     *            any context of the app
+     * @return the app's stats, loaded from disk the first time they are
+     *         asked for
+     */
+    public static synchronized StatsStore get(Context context)
+    {
+        if (instance == null)
+        {
+            Context app = context.getApplicationContext();
+            instance =
+                new StatsStore(
+                    new File(app.getFilesDir(), "stats"),
+                    app.getSharedPreferences(
+                        "com.frenchtoastmafia.snake2048",
+                        0));
+        }
+        return instance;
+    }
+
+
+    /**
+     * Create a new StatsStore object, loading whatever was saved before.
+     *
+     * @param file
+     *            where the stats live
+     * @param legacy
+     *            the preferences the high score used to be kept in, read if
+     *            there are no stats yet
+     */
+    private StatsStore(File file, SharedPreferences legacy)
+    {
+        this.file = file;
+        writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "StatsStore");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        if (!file.exists())
+        {
+            hiscore = legacy.getInt("hiscore", 0);
+            return;
+        }
+        try
+        {
+            load(SnapshotStore.readFully(file));
+        }
+        catch (IOException e)
+        {
+            Log.w("StatsStore", "starting the stats over", e);
+        }
+    }
+
+
+    /**
+     * Adds a finished game to the stats. Only memory is touched; the disk
+     * catches up in the background.
+     *
+     * @param score
+     *            the game's final score
+     * @param maxTile
+     *            the biggest tile made in the game
+     */
+    public synchronized void recordGame(int score, int maxTile)
+    {
+        gamesPlayed++;
+        hiscore = Math.max(hiscore, score);
+        bestTile = Math.max(bestTile, maxTile);
+
+        int slot = (historyStart + historySize) % HISTORY;
+        scores[slot] = score;
+        tiles[slot] = maxTile;
+        if (historySize < HISTORY)
+        {
+            historySize++;
+        }
+        else
+        {
+            historyStart = (historyStart + 1) % HISTORY;
+        }
+
+        if (!flushScheduled)
+        {
+            flushScheduled = true;
+            writer.schedule(flush, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Writes any pending changes now rather than after the usual delay,
+     * e.g. because the activity is going away. Still doesn't block.
+     */
+    public void flush()
+    {
+        writer.execute(flush);
+    }
+
+
+    public synchronized int getHiscore()
+    {
+        return hiscore;
+    }
+
+
+    public synchronized int getGamesPlayed()
+    {
+        return gamesPlayed;
+    }
+
+
+    /**
+     * @return the biggest tile ever made
+     */
+    public synchronized int getBestTile()
+    {
+        return bestTile;
+    }
+
+
+    /**
+     * @return how many games are in the history
+     */
+    public synchronized int historySize()
+    {
+        return historySize;
+    }
+
+
+    /**
+     * @param index
+     *            a game in the history, 0 being the oldest
+     * @return that game's score
+     */
+    public synchronized int historyScore(int index)
+    {
+        return scores[(historyStart + index) % HISTORY];
+    }
+
+
+    /**
+     * @param index
+     *            a game in the history, 0 being the oldest
+     * @return the biggest tile made in that game
+     */
+    public synchronized int historyTile(int index)
+    {
+        return tiles[(historyStart + index) % HISTORY];
+    }
+
+
+    private synchronized byte[] serialize()
+    {
+        flushScheduled = false;
+        ByteBuffer out = ByteBuffer.allocate(1 + 4 * 4 + 8 * historySize);
+        out.put(VERSION);
+        out.putInt(hiscore);
+        out.putInt(gamesPlayed);
+        out.putInt(bestTile);
+        out.putInt(historySize);
+        for (int i = 0; i < historySize; i++)
+        {
+            out.putInt(historyScore(i));
+            out.putInt(historyTile(i));
+        }
+        return out.array();
+    }
+
+
+    private void load(byte[] contents)
+        throws IOException
+    {
+        ByteBuffer in = ByteBuffer.wrap(contents);
+        try
+        {
+            byte version = in.get();
+            if (version != VERSION)
+            {
+                throw new IOException("unsupported stats version " + version);
+            }
+            int savedHiscore = in.getInt();
+            int savedGamesPlayed = in.getInt();
+            int savedBestTile = in.getInt();
+            int size = in.getInt();
+            if (size < 0 || size > HISTORY)
+            {
+                throw new IOException("bad history size " + size);
+            }
+            for (int i = 0; i < size; i++)
+            {
+                scores[i] = in.getInt();
+                tiles[i] = in.getInt();
+            }
+            hiscore = savedHiscore;
+            gamesPlayed = savedGamesPlayed;
+            bestTile = savedBestTile;
+            historySize = size;
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IOException("stats file cut short");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.frenchtoastmafia.snake2048;
+
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.Style;
+
+// -------------------------------------------------------------------------
+/**
+ * How a tile with a given number looks: its label and the paint its label is
+ * drawn with. There is one shared TileStyle per power of two, made the first
+ * time that value is drawn and never changed afterwards, so every tile with
+ * the same number uses the same objects. The text size depends on
+ * Box.SIZE, so the whole table is dropped and rebuilt if that changes.
+ *
+ * The two tile backgrounds are shared the same way, as SNAKE_FILL and
+ * BOX_FILL.
+ */
+public final class TileStyle
+{
+    /** The background of the snake's own tiles */
+    public static final Paint  SNAKE_FILL = fill(Color.BLACK);
+    /** The background of loose tiles waiting to be eaten */
+    public static final Paint  BOX_FILL   = fill(Color.BLUE);
+
+    /** The style of each power of two, by exponent, for styleSize */
+    private static TileStyle[] styles     = new TileStyle[32];
+    private static float       styleSize  = Box.SIZE;
+
+    private final String       label;
+    private final Paint        textPaint;
+
+
+    private TileStyle(int value)
+    {
+        label = Integer.toString(value);
+        textPaint = new Paint();
+        textPaint.setColor(Color.WHITE);
+        textPaint.setStyle(Style.FILL);
+        textPaint.setFakeBoldText(true);
+
+        // e.g. if size is 24 (half of default 48), this will scale text down
+        // by half
+        textPaint.setTextSize((int)(textSize(value) / 48.0 * Box.SIZE));
+    }
+
+
+    /**
+     * @param value
+     *            the number on a tile
+     * @return the shared style for that number
+     */
+    public static TileStyle forValue(int value)
+    {
+        if (styleSize != Box.SIZE)
+        {
+            styles = new TileStyle[32];
+            styleSize = Box.SIZE;
+        }
+        if (value <= 0 || Integer.bitCount(value) != 1)
+        {
+            // not a power of two; never happens in a real game
+            return new TileStyle(value);
+        }
+
+        int exponent = Integer.numberOfTrailingZeros(value);
+        TileStyle style = styles[exponent];
+        if (style == null)
+        {
+            style = new TileStyle(value);
+            styles[exponent] = style;
+        }
+        return style;
+    }
+
+
+    /**
+     * @return the text size for a number on a default 48 pixel tile; longer
+     *         numbers get smaller text so they still fit
+     */
+    private static int textSize(int value)
+    {
+        if (value >= 1000)
+        {
+            return 20;
+        }
+        else if (value >= 100)
+        {
+            return 30;
+        }
+        else if (value >= 10)
+        {
+            return 40;
+        }
+        return 60;
+    }
+
+
+    private static Paint fill(int color)
+    {
+        Paint paint = new Paint();
+        paint.setColor(color);
+        paint.setStyle(Style.FILL);
+        return paint;
+    }
+
+
+    public String getLabel()
+    {
+        return label;
+    }
+
+
+    public Paint getTextPaint()
+    {
+        return textPaint;
+    }
+}
@@ -0,0 +1,389 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// -------------------------------------------------------------------------
+/**
+ * The playing field: its size in cells, which cells the snake covers, and the
+ * loose boxes waiting to be eaten.
+ *
+ * The boxes are kept densely in two parallel arrays (cell and value), indexed
+ * by box id, plus a grid that maps every cell to the id of the box on it, or
+ * -1. Looking up what the head ran into touches one grid slot, and removing a
+ * box moves the last box into its id, so both are O(1) however many boxes
+ * there are. A cell holds at most one box. Box ids are only stable until the
+ * next removal.
+ *
+ * The board also keeps the snake's Occupancy and the set of FreeCells up to
+ * date, so a new box can always be put on a cell nothing else is using, and
+ * records every cell it touches in a ChangedCells set for the renderer. The
+ * owner clears that set at the start of each tick.
+ */
+public class Board
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int        cols;
+    private final int        rows;
+    private final int[]      cellToBox;
+    private final Occupancy  occupancy;
+    private final FreeCells  free;
+    private final ChangedCells changes;
+
+    private int[]            boxCells;
+    private int[]            boxValues;
+    private int              boxCount;
+    /** The XOR of the Zobrist keys of every loose box */
+    private long             boxHash;
+
+
+    /**
+     * Create a new, empty Board object.
+     *
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     */
+    public Board(int cols, int rows)
+    {
+        this.cols = cols;
+        this.rows = rows;
+        cellToBox = new int[cols * rows];
+        Arrays.fill(cellToBox, -1);
+        occupancy = new Occupancy(cols, rows);
+        free = new FreeCells(cols, rows);
+        changes = new ChangedCells(cols, rows);
+        boxCells = new int[INITIAL_CAPACITY];
+        boxValues = new int[INITIAL_CAPACITY];
+    }
+
+
+    /**
+     * Puts a loose box on the board.
+     *
+     * @param col
+     *            the column to put it on
+     * @param row
+     *            the row to put it on
+     * @param value
+     *            the number on the box
+     * @return false if there already is a box on that cell, in which case
+     *         nothing was added
+     */
+    public boolean addBox(int col, int row, int value)
+    {
+        int index = row * cols + col;
+        if (cellToBox[index] >= 0)
+        {
+            return false;
+        }
+
+        if (boxCount == boxCells.length)
+        {
+            grow();
+        }
+        boxCells[boxCount] = Cells.pack(col, row);
+        boxValues[boxCount] = value;
+        cellToBox[index] = boxCount;
+        boxHash ^= Zobrist.box(boxCells[boxCount], Zobrist.exponent(value));
+        boxCount++;
+        free.remove(boxCells[cellToBox[index]]);
+        changes.add(boxCells[cellToBox[index]]);
+        return true;
+    }
+
+
+    /**
+     * Takes a box off the board. The last box takes over its id.
+     *
+     * @param id
+     *            the id of the box to remove
+     */
+    public void removeBox(int id)
+    {
+        int cell = boxCells[id];
+        cellToBox[index(cell)] = -1;
+        boxHash ^= Zobrist.box(cell, Zobrist.exponent(boxValues[id]));
+        changes.add(cell);
+        if (!occupancy.isSet(cell))
+        {
+            free.add(cell);
+        }
+
+        boxCount--;
+        if (id != boxCount)
+        {
+            boxCells[id] = boxCells[boxCount];
+            boxValues[id] = boxValues[boxCount];
+            cellToBox[index(boxCells[id])] = id;
+        }
+    }
+
+
+    /**
+     * @param cell
+     *            a packed cell, on the board or not
+     * @return the id of the box on that cell, or -1 if there is none
+     */
+    public int boxAt(int cell)
+    {
+        int col = Cells.col(cell);
+        int row = Cells.row(cell);
+        if (!contains(col, row))
+        {
+            return -1;
+        }
+        return cellToBox[row * cols + col];
+    }
+
+
+    /**
+     * Takes every loose box off the board. The snake's cells are left alone.
+     * The free cells are rebuilt in the order a new board has them in, less
+     * the snake's cells, so what spawns next depends only on where the snake
+     * is and not on what the board held before.
+     */
+    public void clear()
+    {
+        while (boxCount > 0)
+        {
+            removeBox(boxCount - 1);
+        }
+        free.reset();
+        for (int row = 0; row < rows; row++)
+        {
+            for (int col = 0; col < cols; col++)
+            {
+                int cell = Cells.pack(col, row);
+                if (occupancy.isSet(cell))
+                {
+                    free.remove(cell);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Makes this board a copy of another: the same boxes, with the same ids,
+     * on the same cells, and the same cells covered by the snake. Everything
+     * is copied into the arrays this board already has, so nothing is
+     * allocated unless the other board holds more boxes than this one ever
+     * has. Every cell counts as changed afterwards.
+     *
+     * @param other
+     *            a board of the same size
+     * @throws IllegalArgumentException
+     *             if the boards are different sizes
+     */
+    public void copyFrom(Board other)
+    {
+        if (other.cols != cols || other.rows != rows)
+        {
+            throw new IllegalArgumentException("can't copy a " + other.cols
+                + "x" + other.rows + " board onto a " + cols + "x" + rows
+                + " one");
+        }
+        System.arraycopy(other.cellToBox, 0, cellToBox, 0, cellToBox.length);
+        occupancy.copyFrom(other.occupancy);
+        free.copyFrom(other.free);
+        if (boxCells.length < other.boxCount)
+        {
+            boxCells = new int[other.boxCells.length];
+            boxValues = new int[other.boxValues.length];
+        }
+        System.arraycopy(other.boxCells, 0, boxCells, 0, other.boxCount);
+        System.arraycopy(other.boxValues, 0, boxValues, 0, other.boxCount);
+        boxCount = other.boxCount;
+        boxHash = other.boxHash;
+        changes.markAll();
+    }
+
+
+    /**
+     * Marks a cell as covered by the snake.
+     *
+     * @param cell
+     *            a packed cell on the board or just off it
+     * @return true if the snake was already there, or the cell is off the
+     *         board
+     */
+    public boolean occupy(int cell)
+    {
+        boolean hit = occupancy.testAndSet(cell);
+        if (!hit)
+        {
+            free.remove(cell);
+            changes.add(cell);
+        }
+        return hit;
+    }
+
+
+    /**
+     * Marks a cell as no longer covered by the snake. Cells off the board
+     * are ignored.
+     *
+     * @param cell
+     *            a packed cell
+     */
+    public void vacate(int cell)
+    {
+        int col = Cells.col(cell);
+        int row = Cells.row(cell);
+        if (!contains(col, row))
+        {
+            return;
+        }
+        occupancy.clear(cell);
+        changes.add(cell);
+        if (cellToBox[row * cols + col] < 0)
+        {
+            free.add(cell);
+        }
+    }
+
+
+    /**
+     * @param cell
+     *            a packed cell on the board or just off it
+     * @return true if the snake covers the cell, or the cell is off the
+     *         board; i.e. whether a head moving onto it would die
+     */
+    public boolean isOccupied(int cell)
+    {
+        return occupancy.isSet(cell);
+    }
+
+
+    /**
+     * @param random
+     *            where the randomness comes from
+     * @return a uniformly random cell a box may spawn on, packed, or -1 if
+     *         the board is full
+     */
+    public int randomFreeCell(Random random)
+    {
+        return free.pick(random);
+    }
+
+
+    /**
+     * @return true if the cell lies on the board
+     */
+    public boolean contains(int col, int row)
+    {
+        return col >= 0 && row >= 0 && col < cols && row < rows;
+    }
+
+
+    private void grow()
+    {
+        int[] newCells = new int[boxCells.length * 2];
+        int[] newValues = new int[boxValues.length * 2];
+        System.arraycopy(boxCells, 0, newCells, 0, boxCount);
+        System.arraycopy(boxValues, 0, newValues, 0, boxCount);
+        boxCells = newCells;
+        boxValues = newValues;
+    }
+
+
+    private int index(int cell)
+    {
+        return Cells.row(cell) * cols + Cells.col(cell);
+    }
+
+
+    /**
+     * @return every cell the snake arrived on or left, or a box appeared on
+     *         or left, since the set was last cleared
+     */
+    public ChangedCells changes()
+    {
+        return changes;
+    }
+
+
+    /**
+     * @return how many cells a box could still spawn on
+     */
+    public int freeCellCount()
+    {
+        return free.size();
+    }
+
+
+    /**
+     * @param position
+     *            from 0 to freeCellCount() - 1
+     * @return the free cell a spawn takes for that draw, packed
+     * @see FreeCells#cell(int)
+     */
+    public int freeCell(int position)
+    {
+        return free.cell(position);
+    }
+
+
+    /**
+     * Puts the free cells back in the order freeCell() listed them in, e.g.
+     * on a board restored from a Snapshot.
+     *
+     * @param cells
+     *            the free cells, packed, in their new order
+     * @param count
+     *            how many of cells to use
+     * @return false if those aren't exactly the free cells
+     * @see FreeCells#setOrder(int[], int)
+     */
+    public boolean setFreeCellOrder(int[] cells, int count)
+    {
+        return free.setOrder(cells, count);
+    }
+
+
+    /**
+     * @return the loose boxes' share of Game.stateHash(), which doesn't
+     *         depend on their ids
+     * @see Zobrist
+     */
+    public long boxHash()
+    {
+        return boxHash;
+    }
+
+
+    public int boxCount()
+    {
+        return boxCount;
+    }
+
+
+    /**
+     * @return the packed cell the box with the given id sits on
+     */
+    public int boxCell(int id)
+    {
+        return boxCells[id];
+    }
+
+
+    public int boxValue(int id)
+    {
+        return boxValues[id];
+    }
+
+
+    public int getCols()
+    {
+        return cols;
+    }
+
+
+    public int getRows()
+    {
+        return rows;
+    }
+}
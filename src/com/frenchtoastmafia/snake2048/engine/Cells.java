@@ -0,0 +1,45 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * Packs a (column, row) pair into a single int so a grid cell can be stored
+ * in a primitive array. The column sits in the low 16 bits and the row in the
+ * high 16, both signed, so a head that has just left the board (column -1,
+ * say) still round-trips.
+ */
+public final class Cells
+{
+    private Cells()
+    {
+        // static helpers only
+    }
+
+
+    public static int pack(int col, int row)
+    {
+        return (row << 16) | (col & 0xFFFF);
+    }
+
+
+    public static int col(int cell)
+    {
+        return (short)cell;
+    }
+
+
+    public static int row(int cell)
+    {
+        return cell >> 16;
+    }
+
+
+    /**
+     * @return the cell one step away from the given one in a direction
+     */
+    public static int neighbour(int cell, int direction)
+    {
+        return pack(
+            col(cell) + Direction.dx(direction),
+            row(cell) + Direction.dy(direction));
+    }
+}
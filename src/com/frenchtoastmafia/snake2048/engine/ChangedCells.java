@@ -0,0 +1,136 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * The cells whose contents changed: the snake arrived on or left them, or a
+ * box appeared on or vanished from them. Each cell is listed at most once
+ * however often it changes, and clearing the set is O(1), so one can be
+ * refilled every tick.
+ *
+ * A set can also be marked as "everything changed", for when there is no
+ * sensible list, such as a brand new board.
+ */
+public class ChangedCells
+{
+    private final int   cols;
+    private final int   rows;
+    /** The members, packed, in the order they were added */
+    private final int[] cells;
+    /** A cell is a member if its stamp, by row * cols + col, is generation */
+    private final int[] stamps;
+    private int         generation = 1;
+    private int         size;
+    private boolean     all;
+
+
+    /**
+     * Create a new, empty ChangedCells object.
+     *
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     */
+    public ChangedCells(int cols, int rows)
+    {
+        this.cols = cols;
+        this.rows = rows;
+        cells = new int[cols * rows];
+        stamps = new int[cols * rows];
+    }
+
+
+    /**
+     * Records a change to a cell. Cells off the board are ignored.
+     *
+     * @param cell
+     *            a packed cell
+     */
+    public void add(int cell)
+    {
+        int col = Cells.col(cell);
+        int row = Cells.row(cell);
+        if (col < 0 || row < 0 || col >= cols || row >= rows)
+        {
+            return;
+        }
+        int index = row * cols + col;
+        if (stamps[index] == generation)
+        {
+            return;
+        }
+        stamps[index] = generation;
+        cells[size++] = cell;
+    }
+
+
+    /**
+     * Records every change in another set, which must be for a board of the
+     * same size.
+     *
+     * @param other
+     *            the changes to add
+     */
+    public void addAll(ChangedCells other)
+    {
+        all |= other.all;
+        for (int i = 0; i < other.size; i++)
+        {
+            add(other.cells[i]);
+        }
+    }
+
+
+    /**
+     * Records that everything changed.
+     */
+    public void markAll()
+    {
+        all = true;
+    }
+
+
+    /**
+     * Forgets every change.
+     */
+    public void clear()
+    {
+        size = 0;
+        all = false;
+        generation++;
+        if (generation == 0)
+        {
+            // wrapped around; old stamps could collide with new ones
+            for (int i = 0; i < stamps.length; i++)
+            {
+                stamps[i] = 0;
+            }
+            generation = 1;
+        }
+    }
+
+
+    /**
+     * @return true if everything should be treated as changed, whatever the
+     *         list holds
+     */
+    public boolean isAll()
+    {
+        return all;
+    }
+
+
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * @return the packed cell at the given position in the list
+     */
+    public int cell(int index)
+    {
+        return cells[index];
+    }
+}
@@ -0,0 +1,115 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * The directions the snake can move in. These are kept as plain ints so they
+ * line up with what the swipe handler has always produced: 0 = up, 1 = right,
+ * 2 = down, 3 = left, and -1 while the snake has not started moving.
+ */
+public final class Direction
+{
+    public static final int NONE  = -1;
+    public static final int UP    = 0;
+    public static final int RIGHT = 1;
+    public static final int DOWN  = 2;
+    public static final int LEFT  = 3;
+
+
+    private Direction()
+    {
+        // constants only
+    }
+
+
+    /**
+     * @param direction
+     *            one of the direction constants
+     * @return the column delta of one step in that direction
+     */
+    public static int dx(int direction)
+    {
+        if (direction == RIGHT)
+        {
+            return 1;
+        }
+        else if (direction == LEFT)
+        {
+            return -1;
+        }
+        return 0;
+    }
+
+
+    /**
+     * Up is +1 here, the same way the old Player added VELOCITY to y when
+     * moving up.
+     *
+     * @param direction
+     *            one of the direction constants
+     * @return the row delta of one step in that direction
+     */
+    public static int dy(int direction)
+    {
+        if (direction == UP)
+        {
+            return 1;
+        }
+        else if (direction == DOWN)
+        {
+            return -1;
+        }
+        return 0;
+    }
+
+
+    /**
+     * @param from
+     *            a packed cell
+     * @param to
+     *            a packed cell next to it
+     * @return the direction of the step from one to the other, or NONE if
+     *         they aren't neighbours
+     */
+    public static int between(int from, int to)
+    {
+        int dc = Cells.col(to) - Cells.col(from);
+        int dr = Cells.row(to) - Cells.row(from);
+        if (dr == 0 && dc == 1)
+        {
+            return RIGHT;
+        }
+        else if (dr == 0 && dc == -1)
+        {
+            return LEFT;
+        }
+        else if (dc == 0 && dr == dy(UP))
+        {
+            return UP;
+        }
+        else if (dc == 0 && dr == dy(DOWN))
+        {
+            return DOWN;
+        }
+        return NONE;
+    }
+
+
+    /**
+     * Don't let the player move opposite to (or along) their previous
+     * direction, but if they weren't moving yet anything goes.
+     *
+     * @param current
+     *            the direction the snake is moving in now
+     * @param requested
+     *            the direction the player asked for
+     * @return true if the snake may turn to the requested direction
+     */
+    public static boolean canTurn(int current, int requested)
+    {
+        if (requested < UP || requested > LEFT)
+        {
+            return false;
+        }
+        return current == NONE || (requested - current) % 2 != 0;
+    }
+}
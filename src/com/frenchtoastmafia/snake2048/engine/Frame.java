@@ -0,0 +1,201 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * A copy of everything needed to draw one tick of a game: the snake (with
+ * where each segment was a tick earlier, for interpolation), the loose boxes,
+ * the scores, and which cells changed since a frame the renderer last saw.
+ * The simulation fills one in after every tick and hands it over through a
+ * FrameExchange, so the renderer never reads the live Game.
+ *
+ * Frames are reused: capture() overwrites the previous contents and only
+ * allocates when the snake or the box count outgrows its arrays.
+ */
+public class Frame
+{
+    private int[] snakeCells     = new int[16];
+    private int[] previousCells  = new int[16];
+    private int[] snakeValues    = new int[16];
+    private int   snakeLength;
+
+    private int[] boxCells       = new int[16];
+    private int[] boxValues      = new int[16];
+    private int   boxCount;
+
+    private int[] changedCells   = new int[16];
+    private int   changedCount;
+    private boolean allChanged;
+
+    private int   score;
+    private int   hiscore;
+    private long  tick;
+    private long  time;
+
+
+    /**
+     * Copies the state of a game into this frame.
+     *
+     * @param game
+     *            the game to copy
+     * @param changes
+     *            the cells changed since the last frame the renderer picked
+     *            up
+     * @param hiscore
+     *            the best score to show alongside it
+     * @param time
+     *            when the tick happened, from System.nanoTime()
+     */
+    public void capture(Game game, ChangedCells changes, int hiscore, long time)
+    {
+        Snake snake = game.getSnake();
+        snakeLength = snake.size();
+        if (snakeCells.length < snakeLength)
+        {
+            int capacity = Math.max(snakeLength, snakeCells.length * 2);
+            snakeCells = new int[capacity];
+            previousCells = new int[capacity];
+            snakeValues = new int[capacity];
+        }
+        for (int i = 0; i < snakeLength; i++)
+        {
+            snakeCells[i] = snake.cell(i);
+            previousCells[i] = snake.previousCell(i);
+            snakeValues[i] = snake.value(i);
+        }
+
+        Board board = game.getBoard();
+        boxCount = board.boxCount();
+        if (boxCells.length < boxCount)
+        {
+            int capacity = Math.max(boxCount, boxCells.length * 2);
+            boxCells = new int[capacity];
+            boxValues = new int[capacity];
+        }
+        for (int i = 0; i < boxCount; i++)
+        {
+            boxCells[i] = board.boxCell(i);
+            boxValues[i] = board.boxValue(i);
+        }
+
+        changedCount = changes.size();
+        if (changedCells.length < changedCount)
+        {
+            changedCells = new int[Math.max(changedCount, changedCells.length * 2)];
+        }
+        for (int i = 0; i < changedCount; i++)
+        {
+            changedCells[i] = changes.cell(i);
+        }
+        allChanged = changes.isAll();
+
+        score = game.score();
+        this.hiscore = hiscore;
+        tick = game.getTick();
+        this.time = time;
+    }
+
+
+    public int snakeLength()
+    {
+        return snakeLength;
+    }
+
+
+    /**
+     * @param index
+     *            the segment, counting from 0 at the head
+     * @return the packed cell that segment sits on
+     */
+    public int snakeCell(int index)
+    {
+        return snakeCells[index];
+    }
+
+
+    /**
+     * @param index
+     *            the segment, counting from 0 at the head
+     * @return the packed cell that segment sat on one tick earlier
+     * @see Snake#previousCell(int)
+     */
+    public int previousCell(int index)
+    {
+        return previousCells[index];
+    }
+
+
+    public int snakeValue(int index)
+    {
+        return snakeValues[index];
+    }
+
+
+    public int boxCount()
+    {
+        return boxCount;
+    }
+
+
+    public int boxCell(int index)
+    {
+        return boxCells[index];
+    }
+
+
+    public int boxValue(int index)
+    {
+        return boxValues[index];
+    }
+
+
+    public int changedCount()
+    {
+        return changedCount;
+    }
+
+
+    /**
+     * @return a packed cell whose box or snake coverage changed; the snake's
+     *         body sliding along is not listed cell by cell
+     */
+    public int changedCell(int index)
+    {
+        return changedCells[index];
+    }
+
+
+    /**
+     * @return true if the whole board should be treated as changed
+     */
+    public boolean allChanged()
+    {
+        return allChanged;
+    }
+
+
+    public int score()
+    {
+        return score;
+    }
+
+
+    public int hiscore()
+    {
+        return hiscore;
+    }
+
+
+    public long getTick()
+    {
+        return tick;
+    }
+
+
+    /**
+     * @return when the tick happened, from System.nanoTime()
+     */
+    public long getTime()
+    {
+        return time;
+    }
+}
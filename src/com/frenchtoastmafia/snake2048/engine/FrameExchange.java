@@ -0,0 +1,75 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// -------------------------------------------------------------------------
+/**
+ * Hands frames from the simulation thread to the render thread without
+ * either of them ever waiting on a lock: a triple buffer. The simulation
+ * writes into its back frame and publishes it; the renderer picks up the
+ * newest published frame and keeps drawing it until a newer one arrives.
+ * Each side always owns one frame outright, and the third sits in the middle
+ * to be swapped, so neither can stall the other.
+ *
+ * Exactly one thread may call back() and publish(), and exactly one other
+ * thread may call latest().
+ */
+public class FrameExchange
+{
+    /** Set in the middle slot when it holds a frame the reader hasn't seen */
+    private static final int    FRESH  = 4;
+    private static final int    INDEX  = 3;
+
+    private final Frame[]       frames = new Frame[3];
+    /** Index of the middle frame, plus FRESH */
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int                 back   = 0;
+    private int                 front  = 1;
+
+
+    public FrameExchange()
+    {
+        for (int i = 0; i < frames.length; i++)
+        {
+            frames[i] = new Frame();
+        }
+    }
+
+
+    /**
+     * @return the frame the simulation should fill in next
+     */
+    public Frame back()
+    {
+        return frames[back];
+    }
+
+
+    /**
+     * Makes the back frame the newest one for the reader, and takes the old
+     * middle frame as the new back frame.
+     *
+     * @return true if the reader picked up the previously published frame;
+     *         false if it was replaced before the reader ever saw it
+     */
+    public boolean publish()
+    {
+        int old = middle.getAndSet(back | FRESH);
+        back = old & INDEX;
+        return (old & FRESH) == 0;
+    }
+
+
+    /**
+     * @return the newest published frame; the same one as last time if
+     *         nothing new was published since
+     */
+    public Frame latest()
+    {
+        if ((middle.get() & FRESH) != 0)
+        {
+            front = middle.getAndSet(front) & INDEX;
+        }
+        return frames[front];
+    }
+}
@@ -0,0 +1,214 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+import java.util.Random;
+
+// -------------------------------------------------------------------------
+/**
+ * The cells a new box may spawn on: on the board, away from the edges, and
+ * not covered by the snake or another box. It is a sparse set, so picking a
+ * uniformly random member, claiming a cell and releasing it again are all
+ * O(1), even on a board with only a handful of cells left.
+ *
+ * Which cell a random number picks depends on the order the members sit in,
+ * and that order depends on every claim and release so far. reset() puts
+ * the members back in the row-major order a new set starts in, so a game
+ * restarted from a seed spawns exactly like a new game from that seed. A
+ * Snapshot saves the order, cell(0) to cell(size() - 1), and puts it back
+ * with setOrder(), so a restored game spawns exactly where the original
+ * would have.
+ *
+ * Edge cells are never members (spawning at the edges is annoying), unless
+ * the board is so small that there is no inside to spawn on.
+ */
+public class FreeCells
+{
+    private final int   cols;
+    private final int   rows;
+    /** The members, packed, in pick order */
+    private final int[] dense;
+    /** Where each cell sits in dense, by row * cols + col, or -1 */
+    private final int[] sparse;
+    private int         size;
+
+
+    /**
+     * Create a new FreeCells object with every spawnable cell free.
+     *
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     */
+    public FreeCells(int cols, int rows)
+    {
+        this.cols = cols;
+        this.rows = rows;
+        dense = new int[cols * rows];
+        sparse = new int[cols * rows];
+        reset();
+    }
+
+
+    /**
+     * Makes every spawnable cell free again, in the same order as a new set.
+     */
+    public void reset()
+    {
+        size = 0;
+        for (int i = 0; i < sparse.length; i++)
+        {
+            sparse[i] = -1;
+        }
+        for (int row = 0; row < rows; row++)
+        {
+            for (int col = 0; col < cols; col++)
+            {
+                add(Cells.pack(col, row));
+            }
+        }
+    }
+
+
+    /**
+     * Releases a cell so boxes can spawn on it again. Cells that are already
+     * free, or that are never spawned on, are left alone.
+     *
+     * @param cell
+     *            a packed cell on the board
+     */
+    public void add(int cell)
+    {
+        int col = Cells.col(cell);
+        int row = Cells.row(cell);
+        int index = row * cols + col;
+        if (sparse[index] >= 0 || !spawnable(col, row))
+        {
+            return;
+        }
+        dense[size] = cell;
+        sparse[index] = size;
+        size++;
+    }
+
+
+    /**
+     * Claims a cell so nothing spawns on it. Cells that aren't free are left
+     * alone.
+     *
+     * @param cell
+     *            a packed cell on the board
+     */
+    public void remove(int cell)
+    {
+        int index = Cells.row(cell) * cols + Cells.col(cell);
+        int position = sparse[index];
+        if (position < 0)
+        {
+            return;
+        }
+
+        // move the last member into the hole
+        size--;
+        int last = dense[size];
+        dense[position] = last;
+        sparse[Cells.row(last) * cols + Cells.col(last)] = position;
+        sparse[index] = -1;
+    }
+
+
+    /**
+     * @param random
+     *            where the randomness comes from
+     * @return a uniformly random free cell, packed, or -1 if there is none
+     */
+    public int pick(Random random)
+    {
+        if (size == 0)
+        {
+            return -1;
+        }
+        return dense[random.nextInt(size)];
+    }
+
+
+    /**
+     * @param position
+     *            from 0 to size() - 1
+     * @return the member pick() takes for that draw, packed
+     */
+    public int cell(int position)
+    {
+        return dense[position];
+    }
+
+
+    /**
+     * Puts the members in the order another set listed them in with cell().
+     *
+     * @param cells
+     *            the members, packed, in their new order
+     * @param count
+     *            how many of cells to use
+     * @return false if those aren't exactly the members, in which case the
+     *         order is left scrambled but the members are still the same
+     */
+    public boolean setOrder(int[] cells, int count)
+    {
+        if (count != size)
+        {
+            return false;
+        }
+        for (int position = 0; position < count; position++)
+        {
+            int cell = cells[position];
+            int col = Cells.col(cell);
+            int row = Cells.row(cell);
+            if (col < 0 || row < 0 || col >= cols || row >= rows)
+            {
+                return false;
+            }
+            // a member already put in an earlier position is a duplicate
+            int from = sparse[row * cols + col];
+            if (from < position)
+            {
+                return false;
+            }
+
+            // swap it into place
+            int other = dense[position];
+            dense[position] = cell;
+            sparse[row * cols + col] = position;
+            dense[from] = other;
+            sparse[Cells.row(other) * cols + Cells.col(other)] = from;
+        }
+        return true;
+    }
+
+
+    /**
+     * Makes this a copy of another board's free cells, in the same order.
+     *
+     * @param other
+     *            free cells of a board the same size as this one's
+     */
+    public void copyFrom(FreeCells other)
+    {
+        System.arraycopy(other.dense, 0, dense, 0, other.size);
+        System.arraycopy(other.sparse, 0, sparse, 0, sparse.length);
+        size = other.size;
+    }
+
+
+    public int size()
+    {
+        return size;
+    }
+
+
+    private boolean spawnable(int col, int row)
+    {
+        boolean colInside = cols <= 2 || (col >= 1 && col <= cols - 2);
+        boolean rowInside = rows <= 2 || (row >= 1 && row <= rows - 2);
+        return colInside && rowInside;
+    }
+}
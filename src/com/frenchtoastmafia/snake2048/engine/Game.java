@@ -0,0 +1,268 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * One headless game of Snake 2048: a board, a snake and a spawner, advanced
+ * one tick at a time with step(). Nothing in here knows about Android; the
+ * GameThread only feeds it swipes and draws what it holds.
+ */
+public class Game
+{
+    private final Board   board;
+    private final Snake   snake;
+    private final Spawner spawner;
+    private long          tick;
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new Game object with the snake in the middle of the board and
+     * one loose tile spawned.
+     *
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     * @param seed
+     *            the seed that determines every spawn in this game
+     */
+    public Game(int cols, int rows, long seed)
+    {
+        this(cols, rows, seed, SpawnTable.DEFAULT);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new Game object that spawns by different odds, e.g. to try a
+     * new difficulty out in a simulation.
+     *
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     * @param seed
+     *            the seed that determines every spawn in this game
+     * @param table
+     *            the spawn odds
+     */
+    public Game(int cols, int rows, long seed, SpawnTable table)
+    {
+        board = new Board(cols, rows);
+        snake = new Snake(board, cols / 2, rows / 2);
+        spawner = new Spawner(seed, table);
+
+        spawner.spawnNewBox(board, snake.maxBoxValue());
+    }
+
+
+    /**
+     * Starts a fresh game on the same board. It goes exactly as a new Game
+     * with the same size, seed and spawn table would: nothing carries over
+     * from the game before.
+     *
+     * @param seed
+     *            the seed for the new game
+     */
+    public void restart(long seed)
+    {
+        // the snake first, so that clearing the board frees its old cells
+        // in the same order as a new board
+        snake.restart();
+        board.clear();
+        spawner.reseed(seed);
+        spawner.spawnNewBox(board, snake.maxBoxValue());
+        tick = 0;
+    }
+
+
+    /**
+     * @return a new game in exactly the same state as this one, which will
+     *         go on exactly as this one would given the same inputs
+     */
+    public Game copy()
+    {
+        Game copy = new Game(board.getCols(), board.getRows(), 0);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+
+    /**
+     * Puts this game in exactly the same state as another, spawn sequence
+     * included, so the two go on identically given the same inputs. This is
+     * a handful of array copies into arrays this game already has, and is
+     * what lookahead search does thousands of times a move, so nothing is
+     * allocated once this game has seen a snake as long as the other's.
+     *
+     * @param other
+     *            a game on a board of the same size
+     * @throws IllegalArgumentException
+     *             if the boards are different sizes
+     */
+    public void copyFrom(Game other)
+    {
+        board.copyFrom(other.board);
+        snake.copyFrom(other.snake);
+        spawner.copyFrom(other.spawner);
+        tick = other.tick;
+    }
+
+
+    /**
+     * Puts this game in the state a strategy sees, but with spawns drawn from
+     * a new seed rather than the viewed game's. The view doesn't show what
+     * the game will spawn next, so neither does the copy: a search that plays
+     * ahead on it has to guess, as a person would.
+     *
+     * @param view
+     *            the game to copy
+     * @param spawnSeed
+     *            the seed for this copy's spawns from here on
+     * @throws IllegalArgumentException
+     *             if the boards are different sizes
+     */
+    public void copyFrom(GameView view, long spawnSeed)
+    {
+        copyFrom(view.game());
+        spawner.reseed(spawnSeed);
+    }
+
+
+    /**
+     * Turns the snake if the requested direction is allowed.
+     *
+     * @param direction
+     *            the direction swiped, or Direction.NONE
+     * @return true if the snake turned
+     */
+    public boolean steer(int direction)
+    {
+        if (Direction.canTurn(snake.getMovingDirection(), direction))
+        {
+            snake.setMovingDirection(direction);
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Advances the game by one tick: applies the requested direction, moves
+     * the snake, eats whatever the head ran into, spawns replacements and
+     * checks whether the snake died. The board's changes() are cleared first,
+     * so afterwards they hold exactly the cells this tick touched.
+     *
+     * @param direction
+     *            the direction swiped since the last tick, or Direction.NONE
+     *            to keep going the same way
+     * @return false if the snake died on this tick; the caller decides when
+     *         to restart()
+     */
+    public boolean step(int direction)
+    {
+        if (snake.isDead())
+        {
+            return false;
+        }
+
+        tick++;
+        board.changes().clear();
+        steer(direction);
+        if (snake.getMovingDirection() == Direction.NONE)
+        {
+            return true;
+        }
+
+        snake.adjustPosition();
+
+        // Check if the head has landed on a block, if so, do combination
+        // logic and generate another block
+        int eaten = board.boxAt(snake.headCell());
+        if (eaten >= 0)
+        {
+            snake.fixIntersection(board.boxValue(eaten));
+            board.removeBox(eaten);
+
+            int count = spawner.spawnCount();
+            for (int i = 0; i < count; i++)
+            {
+                spawner.spawnNewBox(board, snake.maxBoxValue());
+            }
+        }
+
+        return !snake.isDead();
+    }
+
+
+    /**
+     * @return true once the snake has died; only restart() brings it back
+     */
+    public boolean isOver()
+    {
+        return snake.isDead();
+    }
+
+
+    /**
+     * A fingerprint of the state of play: the snake's cells and numbers in
+     * order, its direction, the score and the loose boxes. What decides the
+     * spawns to come, the random state and the order the free cells are
+     * drawn in, is left out; both follow from the seed and the inputs, so
+     * games started from the same seed and fed the same inputs hash the same
+     * tick for tick. All of it is integers, so two games in the same state
+     * always hash the same, on any device. The snake and the board keep
+     * their Zobrist hashes up to date as the game changes, so this is O(1)
+     * however big the game is, and cheap enough for a search to use as a
+     * transposition table key on every node.
+     *
+     * @return the hash of the current state
+     * @see Zobrist
+     */
+    public long stateHash()
+    {
+        return snake.hash() ^ board.boxHash() ^ Zobrist.score(snake.score());
+    }
+
+
+    /**
+     * @return how many ticks this game has been stepped through
+     */
+    public long getTick()
+    {
+        return tick;
+    }
+
+
+    /**
+     * Used when restoring a saved game.
+     */
+    void setTick(long tick)
+    {
+        this.tick = tick;
+    }
+
+
+    public Board getBoard()
+    {
+        return board;
+    }
+
+
+    public Snake getSnake()
+    {
+        return snake;
+    }
+
+
+    Spawner getSpawner()
+    {
+        return spawner;
+    }
+
+
+    public int score()
+    {
+        return snake.score();
+    }
+}
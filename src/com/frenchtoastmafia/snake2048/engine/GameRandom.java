@@ -0,0 +1,103 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+import java.util.Random;
+
+// -------------------------------------------------------------------------
+/**
+ * The random number generator behind every spawn. It is a SplitMix64
+ * sequence: the whole state is one long, which can be read out and put back,
+ * so a saved game carries on with exactly the spawns it would have had. It
+ * extends Random only so that it can be passed anywhere a Random is taken;
+ * every method ends up in next(), which draws from the SplitMix64 state.
+ *
+ * Like everything else in a Game it is meant for one thread at a time.
+ */
+public class GameRandom
+    extends Random
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final long GOLDEN_GAMMA     = 0x9e3779b97f4a7c15L;
+
+    private long              state;
+
+
+    /**
+     * Create a new GameRandom object.
+     *
+     * @param seed
+     *            the seed; the same seed always gives the same sequence
+     */
+    public GameRandom(long seed)
+    {
+        super(seed);
+        state = seed;
+    }
+
+
+    /**
+     * Restarts the sequence from a seed.
+     *
+     * @param seed
+     *            the new seed
+     */
+    @Override
+    public void setSeed(long seed)
+    {
+        // also called from Random's constructor, before our fields are set
+        state = seed;
+    }
+
+
+    @Override
+    protected int next(int bits)
+    {
+        return (int)(nextLong() >>> (64 - bits));
+    }
+
+
+    @Override
+    public long nextLong()
+    {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+
+    /**
+     * The SplitMix64 finalizer, which spreads every bit of its input over
+     * the output. Besides drawing from the sequence, it turns consecutive
+     * numbers into unrelated ones, for hash keys and seeds.
+     *
+     * @param z
+     *            any number
+     * @return its mix
+     */
+    public static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+
+    /**
+     * @return the whole state of the sequence, for setState()
+     */
+    public long getState()
+    {
+        return state;
+    }
+
+
+    /**
+     * Puts the sequence back where it was when getState() was called.
+     *
+     * @param state
+     *            a value from getState()
+     */
+    public void setState(long state)
+    {
+        this.state = state;
+    }
+}
@@ -0,0 +1,185 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * A read-only window onto a Game, for strategies: the board, the loose
+ * boxes and the snake, but nothing that changes them. It reads straight
+ * through to the game, so one view made up front follows the game tick after
+ * tick, and across restarts, without copying anything.
+ */
+public final class GameView
+{
+    private final Game  game;
+    private final Board board;
+    private final Snake snake;
+
+
+    /**
+     * Create a new GameView object.
+     *
+     * @param game
+     *            the game to look at
+     */
+    public GameView(Game game)
+    {
+        this.game = game;
+        this.board = game.getBoard();
+        this.snake = game.getSnake();
+    }
+
+
+    /**
+     * For Game.copyFrom(GameView, long); everything outside the engine only
+     * gets to read.
+     */
+    Game game()
+    {
+        return game;
+    }
+
+
+    public int getCols()
+    {
+        return board.getCols();
+    }
+
+
+    public int getRows()
+    {
+        return board.getRows();
+    }
+
+
+    /**
+     * @return how many ticks the game has been stepped through
+     */
+    public long getTick()
+    {
+        return game.getTick();
+    }
+
+
+    public int score()
+    {
+        return snake.score();
+    }
+
+
+    /**
+     * @param cell
+     *            a packed cell on the board or just off it
+     * @return true if the snake covers the cell, or the cell is off the
+     *         board
+     * @see Board#isOccupied(int)
+     */
+    public boolean isOccupied(int cell)
+    {
+        return board.isOccupied(cell);
+    }
+
+
+    /**
+     * @param cell
+     *            a packed cell, on the board or not
+     * @return the number on the loose box on that cell, or 0 if there is
+     *         none
+     */
+    public int boxValueAt(int cell)
+    {
+        int id = board.boxAt(cell);
+        return id < 0 ? 0 : board.boxValue(id);
+    }
+
+
+    public int boxCount()
+    {
+        return board.boxCount();
+    }
+
+
+    /**
+     * @param index
+     *            in [0, boxCount()); only stable until the next tick
+     * @return the packed cell of that box
+     */
+    public int boxCell(int index)
+    {
+        return board.boxCell(index);
+    }
+
+
+    /**
+     * @param index
+     *            in [0, boxCount()); only stable until the next tick
+     * @return the number on that box
+     */
+    public int boxValue(int index)
+    {
+        return board.boxValue(index);
+    }
+
+
+    public int snakeSize()
+    {
+        return snake.size();
+    }
+
+
+    /**
+     * @param index
+     *            the segment, counting from 0 at the head
+     * @return the packed cell that segment sits on
+     */
+    public int snakeCell(int index)
+    {
+        return snake.cell(index);
+    }
+
+
+    /**
+     * @param index
+     *            the segment, counting from 0 at the head
+     * @return the number on that segment
+     */
+    public int snakeValue(int index)
+    {
+        return snake.value(index);
+    }
+
+
+    public int headCell()
+    {
+        return snake.headCell();
+    }
+
+
+    public int headValue()
+    {
+        return snake.headValue();
+    }
+
+
+    public int tailCell()
+    {
+        return snake.cell(snake.size() - 1);
+    }
+
+
+    /**
+     * @return the direction the snake is moving in, or Direction.NONE if it
+     *         hasn't started
+     */
+    public int getMovingDirection()
+    {
+        return snake.getMovingDirection();
+    }
+
+
+    /**
+     * @return the largest number the snake has held so far
+     */
+    public int maxBoxValue()
+    {
+        return snake.maxBoxValue();
+    }
+}
@@ -0,0 +1,214 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// -------------------------------------------------------------------------
+/**
+ * An append-only record of every game played: the board size and seed each
+ * game started from, every swipe and the tick it was applied on, and how
+ * each game ended. Since a game is fully determined by its seed and its
+ * inputs, that is enough for Replay to play any of them again, tick for tick.
+ *
+ * The file is memory-mapped, so recording an input is a few stores into
+ * memory and never waits on the disk; the operating system writes the pages
+ * back on its own. It is a header followed by fixed-size records, and the
+ * unwritten tail of the mapping is zeros, which is how the end is found when
+ * the journal is opened again. All numbers are big-endian:
+ *
+ * <pre>
+ * header:  int MAGIC, int VERSION, 16 bytes reserved
+ * record:  int type, int arg, long a, long b
+ *   START  arg = cols &lt;&lt; 16 | rows, a = seed
+ *   INPUT  arg = direction, a = the tick it was applied on
+ *   END    arg = score, a = the tick the snake died on, b = Game.stateHash()
+ * </pre>
+ *
+ * Only one thread may write to a journal.
+ */
+public class InputJournal
+{
+    /** "S2KJ" */
+    public static final int   MAGIC            = 0x53324b4a;
+    /** 2 since the END records hold Zobrist state hashes */
+    public static final int   VERSION          = 2;
+    public static final int   HEADER_SIZE      = 24;
+    public static final int   RECORD_SIZE      = 24;
+
+    public static final int   START            = 1;
+    public static final int   INPUT            = 2;
+    public static final int   END              = 3;
+
+    /** How much of the file is mapped at first, and by how much it grows */
+    private static final long INITIAL_CAPACITY = 1 << 20;
+
+    private final RandomAccessFile file;
+    private final FileChannel      channel;
+    private MappedByteBuffer       buffer;
+
+
+    private InputJournal(RandomAccessFile file)
+    {
+        this.file = file;
+        channel = file.getChannel();
+    }
+
+
+    /**
+     * Opens a journal for appending, creating it if there is none yet.
+     *
+     * @param path
+     *            the journal file
+     * @return the open journal, positioned after its last record
+     * @throws IOException
+     *             if the file can't be mapped, or isn't a journal
+     */
+    public static InputJournal open(File path)
+        throws IOException
+    {
+        InputJournal journal = new InputJournal(new RandomAccessFile(path, "rw"));
+        try
+        {
+            journal.map(Math.max(INITIAL_CAPACITY, journal.channel.size()));
+            ByteBuffer buffer = journal.buffer;
+            if (buffer.getInt(0) == 0)
+            {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+            }
+            else if (buffer.getInt(0) != MAGIC)
+            {
+                throw new IOException(path + " is not an input journal");
+            }
+            else if (buffer.getInt(4) != VERSION)
+            {
+                throw new IOException("unsupported journal version "
+                    + buffer.getInt(4));
+            }
+            buffer.position(end(buffer));
+            return journal;
+        }
+        catch (IOException e)
+        {
+            journal.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * @param journal
+     *            a whole journal, from its header on
+     * @return the offset just past its last record
+     */
+    public static int end(ByteBuffer journal)
+    {
+        int position = HEADER_SIZE;
+        while (position + RECORD_SIZE <= journal.limit()
+            && journal.getInt(position) != 0)
+        {
+            position += RECORD_SIZE;
+        }
+        return position;
+    }
+
+
+    /**
+     * Records the start of a new game.
+     *
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     * @param seed
+     *            the seed the game was started with
+     * @throws IOException
+     *             if the journal is full and can't be grown
+     */
+    public void startGame(int cols, int rows, long seed)
+        throws IOException
+    {
+        append(START, (cols << 16) | (rows & 0xFFFF), seed, 0);
+    }
+
+
+    /**
+     * Records a swipe. Ticks without one are not recorded.
+     *
+     * @param tick
+     *            the tick the swipe was passed to Game.step() on, i.e.
+     *            getTick() just after that step
+     * @param direction
+     *            the direction swiped
+     * @throws IOException
+     *             if the journal is full and can't be grown
+     */
+    public void input(long tick, int direction)
+        throws IOException
+    {
+        append(INPUT, direction, tick, 0);
+    }
+
+
+    /**
+     * Records the end of a game, with enough to check a replay of it.
+     *
+     * @param game
+     *            the game that just ended
+     * @throws IOException
+     *             if the journal is full and can't be grown
+     */
+    public void endGame(Game game)
+        throws IOException
+    {
+        append(END, game.score(), game.getTick(), game.stateHash());
+    }
+
+
+    /**
+     * Asks the operating system to write everything recorded so far to disk
+     * now. Blocks, so not for the game thread.
+     */
+    public void force()
+    {
+        buffer.force();
+    }
+
+
+    public void close()
+        throws IOException
+    {
+        file.close();
+    }
+
+
+    private void append(int type, int arg, long a, long b)
+        throws IOException
+    {
+        if (buffer.remaining() < RECORD_SIZE)
+        {
+            int end = buffer.position();
+            map(buffer.capacity() + INITIAL_CAPACITY);
+            buffer.position(end);
+        }
+        // the type goes in last, so a record cut short by a crash still
+        // reads as the end of the journal
+        int position = buffer.position();
+        buffer.putInt(position + 4, arg);
+        buffer.putLong(position + 8, a);
+        buffer.putLong(position + 16, b);
+        buffer.putInt(position, type);
+        buffer.position(position + RECORD_SIZE);
+    }
+
+
+    private void map(long size)
+        throws IOException
+    {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+}
@@ -0,0 +1,97 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * A line of text made of a fixed prefix and a number, such as "Score: 128",
+ * kept in a char buffer so it can be drawn every frame without building a
+ * String. The digits are only rewritten when the number actually changes.
+ */
+public class NumberLabel
+{
+    /** Enough for the prefix, a minus sign and every digit of an int */
+    private static final int MAX_DIGITS = 11;
+
+    private final char[]     chars;
+    private final int        prefixLength;
+    private int              length;
+    private int              number;
+
+
+    /**
+     * Create a new NumberLabel object showing the prefix followed by 0.
+     *
+     * @param prefix
+     *            the text in front of the number
+     */
+    public NumberLabel(String prefix)
+    {
+        prefixLength = prefix.length();
+        chars = new char[prefixLength + MAX_DIGITS];
+        prefix.getChars(0, prefixLength, chars, 0);
+        number = 1;
+        set(0);
+    }
+
+
+    /**
+     * Shows a new number. Does nothing if it is already showing it.
+     *
+     * @param value
+     *            the number to show
+     */
+    public void set(int value)
+    {
+        if (value == number)
+        {
+            return;
+        }
+        number = value;
+
+        // write the digits backwards from the end, then slide them down
+        int end = chars.length;
+        int position = end;
+        // work with the negative so Integer.MIN_VALUE doesn't overflow
+        int remaining = value < 0 ? value : -value;
+        do
+        {
+            chars[--position] = (char)('0' - remaining % 10);
+            remaining /= 10;
+        }
+        while (remaining != 0);
+        if (value < 0)
+        {
+            chars[--position] = '-';
+        }
+        int digits = end - position;
+        System.arraycopy(chars, position, chars, prefixLength, digits);
+        length = prefixLength + digits;
+    }
+
+
+    /**
+     * @return the text; only the first length() characters are meaningful
+     */
+    public char[] chars()
+    {
+        return chars;
+    }
+
+
+    public int length()
+    {
+        return length;
+    }
+
+
+    public int number()
+    {
+        return number;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,108 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * One bit per board cell, set while the snake's body is on that cell. The
+ * board is framed by a one-cell border whose bits are always set, so running
+ * into yourself and running off the board are the same single bit test. The
+ * snake only ever moves one cell at a time, so the head can never get past
+ * the border.
+ */
+public class Occupancy
+{
+    private final int    stride;
+    private final long[] bits;
+
+
+    /**
+     * Create a new Occupancy object with only the border set.
+     *
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     */
+    public Occupancy(int cols, int rows)
+    {
+        stride = cols + 2;
+
+        int size = stride * (rows + 2);
+        bits = new long[(size + 63) >>> 6];
+        for (int col = -1; col <= cols; col++)
+        {
+            set(index(col, -1));
+            set(index(col, rows));
+        }
+        for (int row = 0; row < rows; row++)
+        {
+            set(index(-1, row));
+            set(index(cols, row));
+        }
+    }
+
+
+    /**
+     * Marks a cell as occupied.
+     *
+     * @param cell
+     *            a packed cell on the board or on its border
+     * @return true if the cell was already occupied, or is off the board
+     */
+    public boolean testAndSet(int cell)
+    {
+        int index = index(Cells.col(cell), Cells.row(cell));
+        long bit = 1L << index;
+        long word = bits[index >>> 6];
+        bits[index >>> 6] = word | bit;
+        return (word & bit) != 0;
+    }
+
+
+    /**
+     * Marks a cell on the board as free again.
+     *
+     * @param cell
+     *            a packed cell on the board
+     */
+    public void clear(int cell)
+    {
+        int index = index(Cells.col(cell), Cells.row(cell));
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+
+    /**
+     * Makes this a copy of another board's occupancy.
+     *
+     * @param other
+     *            occupancy of a board the same size as this one's
+     */
+    public void copyFrom(Occupancy other)
+    {
+        System.arraycopy(other.bits, 0, bits, 0, bits.length);
+    }
+
+
+    /**
+     * @param cell
+     *            a packed cell on the board or on its border
+     * @return true if the cell is occupied, or is off the board
+     */
+    public boolean isSet(int cell)
+    {
+        int index = index(Cells.col(cell), Cells.row(cell));
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+
+    private void set(int index)
+    {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+
+    private int index(int col, int row)
+    {
+        return (row + 1) * stride + col + 1;
+    }
+}
@@ -0,0 +1,195 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// -------------------------------------------------------------------------
+/**
+ * Plays the games in an InputJournal again, headlessly, and checks that each
+ * one ends exactly as recorded. A game is rebuilt from its seed, and then
+ * stepped tick by tick with the recorded swipes on the ticks they were
+ * recorded on and no swipe in between, just as the game thread stepped it.
+ * Nothing is drawn and nothing waits, so a replay runs as fast as Game.step().
+ */
+public class Replay
+{
+    // -------------------------------------------------------------------------
+    /**
+     * How one replayed game went.
+     */
+    public static class Result
+    {
+        private final long    seed;
+        private final boolean complete;
+        private final boolean verified;
+        private final int     score;
+        private final long    ticks;
+
+
+        Result(long seed, boolean complete, boolean verified, int score, long ticks)
+        {
+            this.seed = seed;
+            this.complete = complete;
+            this.verified = verified;
+            this.score = score;
+            this.ticks = ticks;
+        }
+
+
+        public long getSeed()
+        {
+            return seed;
+        }
+
+
+        /**
+         * @return true if the journal recorded how the game ended; the last
+         *         game in a journal may still be going
+         */
+        public boolean isComplete()
+        {
+            return complete;
+        }
+
+
+        /**
+         * @return true if the replay ended on the recorded tick, with the
+         *         recorded score and state hash
+         */
+        public boolean isVerified()
+        {
+            return verified;
+        }
+
+
+        /**
+         * @return the score the replay reached
+         */
+        public int getScore()
+        {
+            return score;
+        }
+
+
+        /**
+         * @return how many ticks the replay ran for
+         */
+        public long getTicks()
+        {
+            return ticks;
+        }
+    }
+
+
+    private Replay()
+    {
+        // only static methods
+    }
+
+
+    /**
+     * Replays every game in a journal.
+     *
+     * @param journal
+     *            a whole journal, from its header on, e.g. the file mapped
+     *            read-only
+     * @return how each game went, in the order they were played
+     * @throws IllegalArgumentException
+     *             if the buffer is not a journal this version can read
+     */
+    public static List<Result> run(ByteBuffer journal)
+    {
+        if (journal.getInt(0) != InputJournal.MAGIC
+            || journal.getInt(4) != InputJournal.VERSION)
+        {
+            throw new IllegalArgumentException("not a version "
+                + InputJournal.VERSION + " input journal");
+        }
+
+        List<Result> results = new ArrayList<Result>();
+        int end = InputJournal.end(journal);
+        Game game = null;
+        Game spare = null;
+        long seed = 0;
+        boolean diverged = false;
+        for (int position = InputJournal.HEADER_SIZE; position < end; position +=
+            InputJournal.RECORD_SIZE)
+        {
+            int type = journal.getInt(position);
+            int arg = journal.getInt(position + 4);
+            long a = journal.getLong(position + 8);
+            long b = journal.getLong(position + 16);
+
+            if (type == InputJournal.START)
+            {
+                if (game != null)
+                {
+                    // the previous game never got an END record
+                    results.add(new Result(seed, false, false, game.score(), game.getTick()));
+                }
+                seed = a;
+                int cols = arg >>> 16;
+                int rows = arg & 0xFFFF;
+                if (spare != null && spare.getBoard().getCols() == cols
+                    && spare.getBoard().getRows() == rows)
+                {
+                    // Game.restart() plays exactly as a new game from the
+                    // seed, whatever the board held, and allocates nothing
+                    game = spare;
+                    game.restart(seed);
+                }
+                else
+                {
+                    game = new Game(cols, rows, seed);
+                }
+                spare = game;
+                diverged = false;
+            }
+            else if (game == null)
+            {
+                // a record from before the first START; nothing to apply it to
+                continue;
+            }
+            else if (type == InputJournal.INPUT)
+            {
+                diverged |= !advanceTo(game, a - 1);
+                game.step(arg);
+                diverged |= game.getTick() != a;
+            }
+            else if (type == InputJournal.END)
+            {
+                diverged |= !advanceTo(game, a);
+                boolean verified =
+                    !diverged && game.isOver() && game.getTick() == a
+                        && game.score() == arg && game.stateHash() == b;
+                results.add(new Result(seed, true, verified, game.score(), game.getTick()));
+                game = null;
+            }
+        }
+        if (game != null)
+        {
+            results.add(new Result(seed, false, false, game.score(), game.getTick()));
+        }
+        return results;
+    }
+
+
+    /**
+     * Steps a game with no input until it reaches a tick.
+     *
+     * @return false if the game ended, or was already past the tick, before
+     *         getting there
+     */
+    private static boolean advanceTo(Game game, long tick)
+    {
+        while (game.getTick() < tick)
+        {
+            if (!game.step(Direction.NONE))
+            {
+                return game.getTick() == tick;
+            }
+        }
+        return game.getTick() == tick;
+    }
+}
@@ -0,0 +1,734 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+import java.util.Arrays;
+
+// -------------------------------------------------------------------------
+/**
+ * The player's snake: an ordered chain of numbered segments, head first. All
+ * of the movement, merging and death rules that used to live in Player are
+ * here, on integer grid cells, so they can run without a canvas.
+ *
+ * The body's cells are kept in a ring buffer: the trail the snake occupies.
+ * A move writes one new head cell and releases the tail cell, so it costs the
+ * same however long the snake is. The numbers are all powers of two, and are
+ * kept apart as 5 bit exponents, packed end to end into a long[] as one
+ * stream of bits, as a stack with the tail at the bottom and the head on top.
+ * Every segment keeps its number while the body slides, and numbers are only
+ * pushed or merged at the head, so the stack only changes at its top.
+ *
+ * A merge cascade is the head's exponent e followed by e, e+1, e+2, ... down
+ * the chain (2 2 4 8 collapses to 16). It is found a word at a time, by
+ * XORing up to twelve exponents with that ascending run and counting the
+ * matching fields from the leading zeros, and then collapsed in one go. The
+ * score and maxBoxValue() are worked out from the exponents as well.
+ *
+ * Which cells the body covers is also tracked on the Board, updated as the
+ * head advances and the tail retracts, so death is found by a single bit test
+ * when the head lands rather than by searching the body. Once the snake is
+ * dead it has to be restarted (or cleared) before it moves again.
+ *
+ * No two neighbouring segments ever hold the same number: merges are
+ * resolved as soon as a box is eaten, and only the new head can start one.
+ * A move on its own therefore never has anything to merge.
+ *
+ * The snake keeps its share of Game.stateHash() up to date as it changes,
+ * from the Zobrist keys of its head, its links and its numbers, so a move,
+ * a meal and each merge cost a few XORs. Laying a snake out directly with
+ * appendTail(), layOut() or clear() only marks the hash stale, and it is
+ * worked out from scratch the next time it is asked for.
+ */
+public class Snake
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Bits per packed exponent */
+    private static final int BITS             = 5;
+    private static final int FIELD            = (1 << BITS) - 1;
+    /** How many exponents a merge cascade is matched against at a time */
+    private static final int WINDOW           = 12;
+    /** The biggest exponent a field holds, i.e. the biggest value is 2^31 */
+    private static final int MAX_EXPONENT     = FIELD;
+    /**
+     * RUNS[e] holds the run e, e+1, ... e+11 from the top field of a
+     * window down, for matching against a merge cascade.
+     */
+    private static final long[] RUNS          = new long[MAX_EXPONENT + 1];
+
+    static
+    {
+        for (int e = 0; e <= MAX_EXPONENT; e++)
+        {
+            long run = 0;
+            for (int field = 0; field < WINDOW; field++)
+            {
+                int exponent = (e + WINDOW - 1 - field) & FIELD;
+                run |= (long)exponent << (BITS * field);
+            }
+            RUNS[e] = run;
+        }
+    }
+
+    private int[]            cells;
+    private int              mask;
+    /** Ring index of the head cell; the body follows at head + 1, ... */
+    private int              head;
+    private int              length;
+    /**
+     * The exponents of the numbers, counted from 0 at the tail: exponent i
+     * is the 5 bits from bit 5i of the stream, which may straddle two words.
+     * There is always one word to spare past the last exponent.
+     */
+    private long[]           exponents;
+
+    private Board            board;
+    private boolean          dead;
+    /** The cell the tail let go of on the last move */
+    private int              releasedTail;
+    /** True if the last change to the snake was a plain move */
+    private boolean          slid;
+
+    private int              startCol;
+    private int              startRow;
+    private int              movingDirection  = Direction.NONE;
+
+    /** The biggest exponent eaten or merged; 0 until the snake eats */
+    private int              maxExponent;
+    private int              score            = 0;
+
+    /** The snake's Zobrist hash; only meaningful while hashValid */
+    private long             hash;
+    private boolean          hashValid;
+
+
+    /**
+     * Create a new Snake object with a single 2 tile on the start cell.
+     *
+     * @param board
+     *            the board the snake moves on
+     * @param startCol
+     *            the column the head starts on
+     * @param startRow
+     *            the row the head starts on
+     */
+    public Snake(Board board, int startCol, int startRow)
+    {
+        this.board = board;
+        this.startCol = startCol;
+        this.startRow = startRow;
+        cells = new int[INITIAL_CAPACITY];
+        exponents = new long[exponentWords(INITIAL_CAPACITY)];
+        mask = INITIAL_CAPACITY - 1;
+        restart();
+    }
+
+
+    public void restart()
+    {
+        clear();
+        appendTail(startCol, startRow, 2);
+        movingDirection = Direction.NONE;
+        score = 0;
+        maxExponent = 0;
+        hashValid = false;
+    }
+
+
+    /**
+     * This method is solely for determining whether or not the head has run
+     * into something on the given cell. It does not change anything.
+     *
+     * @param cell
+     *            the packed cell to test against the head
+     * @return true if the head sits on that cell
+     */
+    public boolean intersects(int cell)
+    {
+        return cells[head] == cell;
+    }
+
+
+    /**
+     * This method should be called when the head collides with a loose box.
+     * The box's number is pushed onto the front of the snake, one cell past
+     * the old head in the moving direction, without releasing the tail, and
+     * then merged down the chain as far as it goes.
+     *
+     * PRE: the head is on the box's cell (i.e. there was a collision)
+     *
+     * @param value
+     *            the number on the box the head collided with
+     */
+    public void fixIntersection(int value)
+    {
+        if (length == cells.length)
+        {
+            grow();
+        }
+        slid = false;
+
+        int oldHead = cells[head];
+        int newHead = Cells.neighbour(oldHead, movingDirection);
+        dead |= board.occupy(newHead);
+        head = (head - 1) & mask;
+        cells[head] = newHead;
+        int exponent = Zobrist.exponent(value);
+        setExponent(length, exponent);
+        hash ^=
+            Zobrist.head(oldHead) ^ Zobrist.head(newHead)
+                ^ Zobrist.link(oldHead, Direction.between(oldHead, newHead))
+                ^ Zobrist.value(length, exponent);
+        length++;
+
+        if (exponent > maxExponent)
+        {
+            maxExponent = exponent;
+        }
+
+        mergeNumbersTogether();
+    }
+
+
+    /**
+     * Move the snake one cell in the moving direction: the new head cell is
+     * written in front of the old one and the tail cell is let go.
+     */
+    public void adjustPosition()
+    {
+        // Let go of the tail first: the head may move onto the cell it leaves
+        releasedTail = cells[(head + length - 1) & mask];
+        board.vacate(releasedTail);
+        slid = true;
+
+        int oldHead = cells[head];
+        int newHead = Cells.neighbour(oldHead, movingDirection);
+        dead |= board.occupy(newHead);
+        if (length > 1)
+        {
+            // the tail's link goes and the old head gets one
+            hash ^=
+                tailLink()
+                    ^ Zobrist.link(oldHead, Direction.between(oldHead, newHead));
+        }
+        hash ^= Zobrist.head(oldHead) ^ Zobrist.head(newHead);
+        head = (head - 1) & mask;
+        cells[head] = newHead;
+    }
+
+
+    /**
+     * Collapses the head into the segments behind it for as long as they
+     * hold the same number, e.g. 2248 -> 448 -> 88 -> 16. The whole cascade
+     * is found first, twelve exponents at a time, and then collapsed: the
+     * head's number and the k behind it become one, and the trail loses k
+     * cells at the tail. When the head doesn't match the one behind it,
+     * that is all this looks at.
+     */
+    public void mergeNumbersTogether()
+    {
+        if (length < 2)
+        {
+            return;
+        }
+        int top = length - 1;
+        // the exponent behind the head, and the head's above it; usually
+        // both are in the same word
+        int bit = BITS * (top - 1);
+        long pair = exponents[bit >>> 6] >>> (bit & 63);
+        if ((bit & 63) > 64 - 2 * BITS)
+        {
+            pair = bitsAt(bit);
+        }
+        if (((pair ^ (pair >>> BITS)) & FIELD) != 0)
+        {
+            // by far the most common case: nothing to merge
+            return;
+        }
+        int exponent = (int)(pair >>> BITS) & FIELD;
+        collapse(top, exponent, cascadeLength(top - 1, exponent));
+    }
+
+
+    /**
+     * Merges the head, whose exponent is on top of the stack, with the run
+     * of exponents below it, and shortens the trail to match.
+     */
+    private void collapse(int top, int exponent, int merges)
+    {
+        // every merge of two 2^(e+j) scores 2^(e+j), for j = 0 .. merges-1
+        int merged = exponent + merges;
+        score += (1 << merged) - (1 << exponent);
+        if (merged > maxExponent)
+        {
+            maxExponent = merged;
+        }
+
+        // the head and the run below it become one exponent on top
+        hash ^= Zobrist.value(top, exponent);
+        for (int j = 0; j < merges; j++)
+        {
+            hash ^= Zobrist.value(top - 1 - j, exponent + j);
+        }
+        hash ^= Zobrist.value(top - merges, merged);
+        setExponent(top - merges, merged);
+
+        // and the trail gives up as many cells at the tail
+        for (int j = 0; j < merges; j++)
+        {
+            hash ^= tailLink();
+            length--;
+            board.vacate(cells[(head + length) & mask]);
+        }
+    }
+
+
+    /**
+     * Counts how far down the chain from a segment the exponents run e, e+1,
+     * e+2, ... a word at a time: each word is XORed with the run it should
+     * hold, and the fields above the highest bit that differs all matched.
+     *
+     * @param from
+     *            the segment to start at, counting from 0 at the tail
+     * @param exponent
+     *            the exponent it has to hold to start the run
+     * @return the length of the run, i.e. how many merges the cascade takes
+     */
+    private int cascadeLength(int from, int exponent)
+    {
+        // a merge can't go past the biggest exponent a field holds
+        int limit = MAX_EXPONENT - exponent;
+        int count = 0;
+        int slot = from;
+        while (slot >= 0 && count < limit)
+        {
+            // the window is the fields slot - fields + 1 .. slot, lowest
+            // first, and the run it should hold starts from its top field
+            int fields = Math.min(slot + 1, WINDOW);
+            long window = bitsAt(BITS * (slot + 1 - fields));
+            long expected =
+                RUNS[exponent + count] >>> (BITS * (WINDOW - fields));
+            long diff =
+                (window ^ expected) & ((1L << (BITS * fields)) - 1);
+            if (diff != 0)
+            {
+                int highest = (63 - Long.numberOfLeadingZeros(diff)) / BITS;
+                count += fields - 1 - highest;
+                break;
+            }
+            count += fields;
+            slot -= fields;
+        }
+        return Math.min(count, limit);
+    }
+
+
+    /**
+     * @return true if the head has run into the body or off the board
+     */
+    public boolean isDead()
+    {
+        return dead;
+    }
+
+
+    /**
+     * Makes this snake a copy of another, ring layout and all, on this
+     * snake's own board. The board has to be copied separately. Nothing is
+     * allocated unless the other snake has grown its rings further than this
+     * one.
+     *
+     * @param other
+     *            a snake on a board of the same size
+     */
+    public void copyFrom(Snake other)
+    {
+        if (cells.length != other.cells.length)
+        {
+            cells = new int[other.cells.length];
+            exponents = new long[other.exponents.length];
+        }
+        System.arraycopy(other.cells, 0, cells, 0, cells.length);
+        System.arraycopy(
+            other.exponents,
+            0,
+            exponents,
+            0,
+            exponentWords(other.length));
+        mask = other.mask;
+        head = other.head;
+        length = other.length;
+        dead = other.dead;
+        releasedTail = other.releasedTail;
+        slid = other.slid;
+        startCol = other.startCol;
+        startRow = other.startRow;
+        movingDirection = other.movingDirection;
+        maxExponent = other.maxExponent;
+        score = other.score;
+        hash = other.hash;
+        hashValid = other.hashValid;
+    }
+
+
+    /**
+     * Adds a segment behind the current tail. Used to lay out a snake
+     * directly, e.g. when setting up a benchmark or restoring a game; nothing
+     * is merged, so the caller should not put equal numbers next to each
+     * other. The exponents are counted from the tail, so the whole stream
+     * shifts up a field, a word at a time; use layOut() for a whole snake.
+     *
+     * @param col
+     *            the column of the new tail
+     * @param row
+     *            the row of the new tail
+     * @param value
+     *            the number on the new tail
+     */
+    public void appendTail(int col, int row, int value)
+    {
+        if (length == cells.length)
+        {
+            grow();
+        }
+        int cell = Cells.pack(col, row);
+        dead |= board.occupy(cell);
+        cells[(head + length) & mask] = cell;
+        long carry = Zobrist.exponent(value);
+        for (int word = 0; word < exponentWords(length + 1); word++)
+        {
+            long shifted = exponents[word];
+            exponents[word] = shifted << BITS | carry;
+            carry = shifted >>> (64 - BITS);
+        }
+        length++;
+        hashValid = false;
+
+        if (Zobrist.exponent(value) > maxExponent)
+        {
+            maxExponent = Zobrist.exponent(value);
+        }
+    }
+
+
+    /**
+     * Replaces the whole snake with the given segments in one pass, e.g.
+     * when restoring a game. This is what appendTail() does for each segment
+     * in turn, except that the exponent stream is written once rather than
+     * shifted for every segment, so it takes time linear in the length.
+     *
+     * @param segmentCells
+     *            the packed cells of the segments, head first
+     * @param segmentExponents
+     *            the exponents of their numbers, head first, each from 1 to
+     *            31
+     * @param count
+     *            how many segments to lay out
+     */
+    public void layOut(int[] segmentCells, int[] segmentExponents, int count)
+    {
+        clear();
+        int capacity = cells.length;
+        while (capacity < count)
+        {
+            capacity *= 2;
+        }
+        if (capacity != cells.length)
+        {
+            cells = new int[capacity];
+            exponents = new long[exponentWords(capacity)];
+            mask = capacity - 1;
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            dead |= board.occupy(segmentCells[i]);
+            cells[i] = segmentCells[i];
+        }
+        Arrays.fill(exponents, 0, exponentWords(count), 0);
+        for (int i = 0; i < count; i++)
+        {
+            int exponent = segmentExponents[i];
+            setExponent(count - 1 - i, exponent);
+            if (exponent > maxExponent)
+            {
+                maxExponent = exponent;
+            }
+        }
+        length = count;
+    }
+
+
+    /**
+     * Removes every segment, leaving the snake empty until appendTail() is
+     * called. Score and direction are left alone.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < length; i++)
+        {
+            board.vacate(cells[(head + i) & mask]);
+        }
+        head = 0;
+        length = 0;
+        maxExponent = 0;
+        dead = false;
+        slid = false;
+        hashValid = false;
+    }
+
+
+    /**
+     * The snake's share of Game.stateHash(): where its head is, the path its
+     * body takes, the numbers along it and the way it is moving. The score
+     * is not included.
+     *
+     * @return the snake's Zobrist hash
+     * @see Zobrist
+     */
+    public long hash()
+    {
+        if (!hashValid)
+        {
+            hash = computeHash();
+            hashValid = true;
+        }
+        return hash;
+    }
+
+
+    /**
+     * Works the hash out from scratch, key by key.
+     */
+    private long computeHash()
+    {
+        if (length == 0)
+        {
+            return Zobrist.direction(movingDirection);
+        }
+        long result = Zobrist.head(cells[head]) ^ Zobrist.direction(movingDirection);
+        for (int i = 0; i < length; i++)
+        {
+            if (i > 0)
+            {
+                int cell = cells[(head + i) & mask];
+                int inFront = cells[(head + i - 1) & mask];
+                result ^= Zobrist.link(cell, Direction.between(cell, inFront));
+            }
+            result ^= Zobrist.value(length - 1 - i, slotExponent(length - 1 - i));
+        }
+        return result;
+    }
+
+
+    /**
+     * PRE: length > 1
+     *
+     * @return the key of the link from the tail to the segment in front of it
+     */
+    private long tailLink()
+    {
+        int tail = cells[(head + length - 1) & mask];
+        int inFront = cells[(head + length - 2) & mask];
+        return Zobrist.link(tail, Direction.between(tail, inFront));
+    }
+
+
+    private void grow()
+    {
+        int capacity = cells.length * 2;
+        int[] newCells = new int[capacity];
+        for (int i = 0; i < length; i++)
+        {
+            newCells[i] = cells[(head + i) & mask];
+        }
+        long[] newExponents = new long[exponentWords(capacity)];
+        System.arraycopy(exponents, 0, newExponents, 0, exponents.length);
+        cells = newCells;
+        exponents = newExponents;
+        mask = capacity - 1;
+        head = 0;
+    }
+
+
+    /**
+     * @param slot
+     *            the segment, counting from 0 at the tail
+     * @return the exponent of its number
+     */
+    private int slotExponent(int slot)
+    {
+        return (int)bitsAt(BITS * slot) & FIELD;
+    }
+
+
+    private void setExponent(int slot, int exponent)
+    {
+        int bit = BITS * slot;
+        int word = bit >>> 6;
+        int shift = bit & 63;
+        exponents[word] =
+            exponents[word] & ~((long)FIELD << shift) | (long)exponent << shift;
+        if (shift > 64 - BITS)
+        {
+            // the field's high bits spill into the next word
+            int spill = 64 - shift;
+            exponents[word + 1] =
+                exponents[word + 1] & ~((long)FIELD >>> spill)
+                    | (long)exponent >>> spill;
+        }
+    }
+
+
+    /**
+     * @param bit
+     *            an offset into the exponent stream
+     * @return the 64 bits of the stream from there on, from both words
+     *         they may straddle
+     */
+    private long bitsAt(int bit)
+    {
+        int word = bit >>> 6;
+        int shift = bit & 63;
+        // two shifts, so that a shift of 0 drops the next word rather than
+        // shifting it by 64, which Java treats as 0
+        return exponents[word] >>> shift
+            | exponents[word + 1] << 1 << (63 - shift);
+    }
+
+
+    /**
+     * @return how many words the exponent stream needs for a snake of the
+     *         given length, with the word to spare
+     */
+    private static int exponentWords(int length)
+    {
+        return BITS * length / 64 + 2;
+    }
+
+
+    /**
+     * @param index
+     *            the segment, counting from 0 at the head
+     * @return the packed cell that segment sits on
+     * @see Cells
+     */
+    public int cell(int index)
+    {
+        return cells[(head + index) & mask];
+    }
+
+
+    /**
+     * @param index
+     *            the segment, counting from 0 at the head
+     * @return the number on that segment
+     */
+    public int value(int index)
+    {
+        return 1 << slotExponent(length - 1 - index);
+    }
+
+
+    /**
+     * @param index
+     *            the segment, counting from 0 at the head
+     * @return the exponent of the number on that segment, i.e. its log2
+     */
+    public int exponent(int index)
+    {
+        return slotExponent(length - 1 - index);
+    }
+
+
+    /**
+     * Where a segment was before the last tick, for drawing it part of the way
+     * through its move. Segments that were just eaten or merged have no
+     * earlier cell to slide from, so after anything but a plain move this is
+     * the segment's current cell.
+     *
+     * @param index
+     *            the segment, counting from 0 at the head
+     * @return the packed cell that segment sat on one move ago
+     */
+    public int previousCell(int index)
+    {
+        if (!slid)
+        {
+            return cell(index);
+        }
+        if (index + 1 < length)
+        {
+            return cells[(head + index + 1) & mask];
+        }
+        return releasedTail;
+    }
+
+
+    public int headCell()
+    {
+        return cells[head];
+    }
+
+
+    public int headCol()
+    {
+        return Cells.col(cells[head]);
+    }
+
+
+    public int headRow()
+    {
+        return Cells.row(cells[head]);
+    }
+
+
+    public int headValue()
+    {
+        return 1 << slotExponent(length - 1);
+    }
+
+
+    public int size()
+    {
+        return length;
+    }
+
+
+    public void setMovingDirection(int movingDirection)
+    {
+        hash ^=
+            Zobrist.direction(this.movingDirection)
+                ^ Zobrist.direction(movingDirection);
+        this.movingDirection = movingDirection;
+    }
+
+
+    public int getMovingDirection()
+    {
+        return movingDirection;
+    }
+
+
+    /**
+     * @return the biggest number the snake has eaten or merged since it
+     *         started, or 0 if it hasn't eaten yet
+     */
+    public int maxBoxValue()
+    {
+        return maxExponent == 0 ? 0 : 1 << maxExponent;
+    }
+
+
+    public int score()
+    {
+        return score;
+    }
+
+
+    /**
+     * Used when restoring a saved game.
+     */
+    void setScore(int score)
+    {
+        this.score = score;
+    }
+}
@@ -0,0 +1,285 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+// -------------------------------------------------------------------------
+/**
+ * Saves a whole Game as a small byte array, and turns one back into a Game
+ * that carries on exactly as the original would have. All numbers are
+ * big-endian:
+ *
+ * <pre>
+ * int    MAGIC
+ * byte   VERSION
+ * short  cols, rows            (unsigned)
+ * long   tick
+ * int    score
+ * byte   moving direction
+ * long   spawn random state
+ * int    snake length n
+ * int[n] snake cells, head first, packed as in Cells
+ * byte[n] snake exponents      (a segment holding 2^e is stored as e)
+ * int    box count m
+ * int[m] box cells
+ * byte[m] box exponents
+ * int    free cell count f
+ * int[f] free cells, in the order spawns pick from
+ * </pre>
+ *
+ * Everything else (which cells are occupied, the largest number held)
+ * follows from these and is rebuilt on restore. Which cells are free does
+ * too, but not the order they are kept in, which spawns depend on.
+ *
+ * A box may lie under the snake: eating a box pushes the head on to the
+ * cell past it, which can hold another box.
+ */
+public class Snapshot
+{
+    /** "S2K!" */
+    public static final int  MAGIC   = 0x53324b21;
+    public static final byte VERSION = 2;
+
+    private static final int HEADER  =
+        4 + 1 + 2 + 2 + 8 + 4 + 1 + 8 + 4 + 4 + 4;
+
+
+    private Snapshot()
+    {
+        // only static methods
+    }
+
+
+    /**
+     * @param game
+     *            the game to save
+     * @return the snapshot, ready to be written out
+     */
+    public static byte[] write(Game game)
+    {
+        Board board = game.getBoard();
+        Snake snake = game.getSnake();
+        int length = snake.size();
+        int boxes = board.boxCount();
+        int free = board.freeCellCount();
+
+        ByteBuffer out =
+            ByteBuffer.allocate(HEADER + 5 * length + 5 * boxes + 4 * free);
+        out.putInt(MAGIC);
+        out.put(VERSION);
+        out.putShort((short)board.getCols());
+        out.putShort((short)board.getRows());
+        out.putLong(game.getTick());
+        out.putInt(snake.score());
+        out.put((byte)snake.getMovingDirection());
+        out.putLong(game.getSpawner().getRandomState());
+
+        out.putInt(length);
+        for (int i = 0; i < length; i++)
+        {
+            out.putInt(snake.cell(i));
+        }
+        for (int i = 0; i < length; i++)
+        {
+            out.put((byte)snake.exponent(i));
+        }
+
+        out.putInt(boxes);
+        for (int i = 0; i < boxes; i++)
+        {
+            out.putInt(board.boxCell(i));
+        }
+        for (int i = 0; i < boxes; i++)
+        {
+            out.put(exponent(board.boxValue(i)));
+        }
+
+        out.putInt(free);
+        for (int i = 0; i < free; i++)
+        {
+            out.putInt(board.freeCell(i));
+        }
+        return out.array();
+    }
+
+
+    /**
+     * @param snapshot
+     *            bytes from write()
+     * @return a new game in the saved state
+     * @throws IOException
+     *             if the bytes are not a snapshot, are from a version this
+     *             code doesn't know, or are cut short
+     */
+    public static Game read(byte[] snapshot)
+        throws IOException
+    {
+        ByteBuffer in = ByteBuffer.wrap(snapshot);
+        try
+        {
+            if (in.getInt() != MAGIC)
+            {
+                throw new IOException("not a game snapshot");
+            }
+            byte version = in.get();
+            if (version != VERSION)
+            {
+                throw new IOException("unsupported snapshot version "
+                    + version);
+            }
+            int cols = in.getShort() & 0xFFFF;
+            int rows = in.getShort() & 0xFFFF;
+            checkSize(in, cols, rows);
+            long tick = in.getLong();
+            int score = in.getInt();
+            int direction = in.get();
+            if (direction < Direction.NONE || direction > Direction.LEFT)
+            {
+                throw new IOException("bad direction " + direction);
+            }
+            long randomState = in.getLong();
+
+            Game game = new Game(cols, rows, 0);
+            Board board = game.getBoard();
+            Snake snake = game.getSnake();
+            board.clear();
+
+            int length = checkedCount(in, in.getInt(), 5);
+            if (length < 1)
+            {
+                throw new IOException("snake has no segments");
+            }
+            int[] snakeCells = new int[length];
+            int[] snakeExponents = new int[length];
+            for (int i = 0; i < length; i++)
+            {
+                int cell = in.getInt();
+                // a dead snake's head may be one cell off the board
+                if (Cells.col(cell) < -1 || Cells.col(cell) > cols
+                    || Cells.row(cell) < -1 || Cells.row(cell) > rows)
+                {
+                    throw new IOException("snake off the board");
+                }
+                snakeCells[i] = cell;
+            }
+            for (int i = 0; i < length; i++)
+            {
+                snakeExponents[i] = checkedExponent(in.get());
+            }
+            snake.layOut(snakeCells, snakeExponents, length);
+
+            int boxes = checkedCount(in, in.getInt(), 5);
+            int cellsAt = in.position();
+            int exponentsAt = cellsAt + 4 * boxes;
+            for (int i = 0; i < boxes; i++)
+            {
+                int cell = in.getInt(cellsAt + 4 * i);
+                if (!board.contains(Cells.col(cell), Cells.row(cell)))
+                {
+                    throw new IOException("box off the board");
+                }
+                if (!board.addBox(
+                    Cells.col(cell),
+                    Cells.row(cell),
+                    1 << checkedExponent(in.get(exponentsAt + i))))
+                {
+                    throw new IOException("two boxes on one cell");
+                }
+            }
+            in.position(exponentsAt + boxes);
+
+            int free = checkedCount(in, in.getInt(), 4);
+            int[] freeCells = new int[free];
+            in.asIntBuffer().get(freeCells);
+            if (!board.setFreeCellOrder(freeCells, free))
+            {
+                throw new IOException("free cells don't match the board");
+            }
+
+            snake.setScore(score);
+            snake.setMovingDirection(direction);
+            game.getSpawner().setRandomState(randomState);
+            game.setTick(tick);
+            board.changes().clear();
+            return game;
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IOException("snapshot cut short");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            throw new IOException("snapshot cut short");
+        }
+    }
+
+
+    /**
+     * Makes sure a board size can be played, and is no bigger than the rest
+     * of the snapshot can describe, before a Board is allocated for it.
+     * Every cell a box may spawn on is listed once, as a free cell, a box or
+     * a snake segment, each at least 4 bytes, so a corrupt size can't make
+     * us allocate more than a few times the snapshot's own size.
+     */
+    private static void checkSize(ByteBuffer in, int cols, int rows)
+        throws IOException
+    {
+        // a dead head one column or row past the edge must still pack
+        if (cols < 1 || rows < 1 || cols > Short.MAX_VALUE
+            || rows > Short.MAX_VALUE)
+        {
+            throw new IOException("bad board size " + cols + "x" + rows);
+        }
+        long spawnableCols = cols <= 2 ? cols : cols - 2;
+        long spawnableRows = rows <= 2 ? rows : rows - 2;
+        if (spawnableCols * spawnableRows > in.remaining() / 4)
+        {
+            throw new IOException("snapshot cut short");
+        }
+    }
+
+
+    /**
+     * Makes sure a count of records of the given size fits in what is left
+     * of the snapshot, so a corrupt count can't make us allocate or loop
+     * forever.
+     */
+    private static int checkedCount(ByteBuffer in, int count, int bytes)
+        throws IOException
+    {
+        if (count < 0 || count > in.remaining() / bytes)
+        {
+            throw new IOException("snapshot cut short");
+        }
+        return count;
+    }
+
+
+    /**
+     * @return a stored exponent
+     * @throws IOException
+     *             if no number in the game has that exponent
+     */
+    private static int checkedExponent(byte exponent)
+        throws IOException
+    {
+        // 2^0 is never played, and the snake packs exponents into 5 bits
+        if (exponent < 1 || exponent > 31)
+        {
+            throw new IOException("bad exponent " + exponent);
+        }
+        return exponent;
+    }
+
+
+    private static byte exponent(int value)
+    {
+        if (value <= 0 || Integer.bitCount(value) != 1)
+        {
+            throw new IllegalArgumentException(value
+                + " is not a power of two");
+        }
+        return (byte)Integer.numberOfTrailingZeros(value);
+    }
+}
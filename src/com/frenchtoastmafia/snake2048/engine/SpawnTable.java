@@ -0,0 +1,162 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * The odds a Spawner works from: which numbers a new box may carry, how
+ * likely each one is, how big the snake's largest number has to be before
+ * each one is allowed, and how often eating a box spawns two new ones
+ * instead of one.
+ *
+ * A value is picked by drawing r from [0, sum of the weights) and walking
+ * the tiers in order: the first tier whose cumulative weight is above r and
+ * whose gate is below the snake's largest number wins. If r lands on a tier
+ * that is still gated off, the walk carries on to the later tiers, and if
+ * none of them is open either the first tier's value is used. DEFAULT is
+ * the table the game has always played with, and draws from the random
+ * sequence exactly as the hardcoded odds did, so games recorded before this
+ * class existed replay the same.
+ *
+ * A table never changes once made, so one can be shared by any number of
+ * games on any number of threads.
+ */
+public final class SpawnTable
+{
+    /**
+     * 2, 4, 8 and 16 with weights 7, 5, 3 and 1 out of 16; a 4 once the
+     * snake has held more than a 2, an 8 once it has held more than a 4 and
+     * a 16 once it has held more than an 8. Two boxes instead of one a third
+     * of the time.
+     */
+    public static final SpawnTable DEFAULT =
+        new SpawnTable(
+            new int[] { 2, 4, 8, 16 },
+            new int[] { 7, 5, 3, 1 },
+            new int[] { 0, 2, 4, 8 },
+            1,
+            3);
+
+    private final int[] values;
+    /** The running sum of the weights, so tier i covers [bounds[i-1], bounds[i]) */
+    private final int[] bounds;
+    private final int[] gates;
+    private final int   doubleOdds;
+    private final int   doubleOutOf;
+
+
+    /**
+     * Create a new SpawnTable object. The arrays are copied.
+     *
+     * @param values
+     *            the number each tier spawns
+     * @param weights
+     *            how likely each tier is, relative to the others
+     * @param gates
+     *            for each tier, the snake's largest number has to be above
+     *            this for the tier to spawn
+     * @param doubleOdds
+     *            out of doubleOutOf, how often eating a box spawns two
+     * @param doubleOutOf
+     *            see doubleOdds
+     */
+    public SpawnTable(
+        int[] values,
+        int[] weights,
+        int[] gates,
+        int doubleOdds,
+        int doubleOutOf)
+    {
+        if (values.length == 0 || weights.length != values.length
+            || gates.length != values.length)
+        {
+            throw new IllegalArgumentException(
+                "values, weights and gates must be the same non-zero length");
+        }
+        if (doubleOutOf < 1 || doubleOdds < 0 || doubleOdds > doubleOutOf)
+        {
+            throw new IllegalArgumentException("double spawn odds "
+                + doubleOdds + "/" + doubleOutOf);
+        }
+
+        this.values = new int[values.length];
+        this.bounds = new int[values.length];
+        this.gates = new int[values.length];
+        int sum = 0;
+        for (int i = 0; i < values.length; i++)
+        {
+            if (values[i] <= 0 || Integer.bitCount(values[i]) != 1)
+            {
+                throw new IllegalArgumentException(values[i]
+                    + " is not a power of two");
+            }
+            if (weights[i] < 0)
+            {
+                throw new IllegalArgumentException("negative weight "
+                    + weights[i]);
+            }
+            sum += weights[i];
+            this.values[i] = values[i];
+            this.bounds[i] = sum;
+            this.gates[i] = gates[i];
+        }
+        if (sum == 0)
+        {
+            throw new IllegalArgumentException("all weights are zero");
+        }
+        this.doubleOdds = doubleOdds;
+        this.doubleOutOf = doubleOutOf;
+    }
+
+
+    /**
+     * @param random
+     *            where the randomness comes from; exactly one int is drawn
+     * @return how many boxes to spawn after the snake eats one, 1 or 2
+     */
+    public int count(GameRandom random)
+    {
+        // the top doubleOdds draws spawn two, which for 1/3 is the old
+        // 1 + rand[0,3)/2
+        return random.nextInt(doubleOutOf) >= doubleOutOf - doubleOdds ? 2 : 1;
+    }
+
+
+    /**
+     * @param random
+     *            where the randomness comes from; exactly one int is drawn
+     * @param maxBoxValue
+     *            the largest value the snake has held so far
+     * @return the number a new box carries
+     */
+    public int value(GameRandom random, int maxBoxValue)
+    {
+        int r = random.nextInt(bounds[bounds.length - 1]);
+        for (int i = 0; i < bounds.length; i++)
+        {
+            if (r < bounds[i] && maxBoxValue > gates[i])
+            {
+                return values[i];
+            }
+        }
+        return values[0];
+    }
+
+
+    /**
+     * @return the table as value:weight/gate for each tier, then the double
+     *         spawn odds, e.g. "2:7/0 4:5/2 8:3/4 16:1/8 x2:1/3"
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        int previous = 0;
+        for (int i = 0; i < values.length; i++)
+        {
+            text.append(values[i]).append(':').append(bounds[i] - previous)
+                .append('/').append(gates[i]).append(' ');
+            previous = bounds[i];
+        }
+        return text.append("x2:").append(doubleOdds).append('/')
+            .append(doubleOutOf).toString();
+    }
+}
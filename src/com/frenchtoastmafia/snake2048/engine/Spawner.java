@@ -0,0 +1,115 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * Decides where new loose tiles appear and what number they carry. All of the
+ * randomness in a game comes from the one seeded GameRandom in here, so a
+ * game is fully determined by its seed and its inputs, and a saved game only
+ * needs the generator's state to carry on exactly where it left off. The odds
+ * themselves come from a SpawnTable.
+ */
+public class Spawner
+{
+    private final GameRandom random;
+    private SpawnTable       table;
+
+
+    /**
+     * Create a new Spawner object with the default odds.
+     *
+     * @param seed
+     *            the seed for the spawn positions and values
+     */
+    public Spawner(long seed)
+    {
+        this(seed, SpawnTable.DEFAULT);
+    }
+
+
+    /**
+     * Create a new Spawner object.
+     *
+     * @param seed
+     *            the seed for the spawn positions and values
+     * @param table
+     *            the odds of each spawn value and of spawning two boxes
+     */
+    public Spawner(long seed, SpawnTable table)
+    {
+        random = new GameRandom(seed);
+        this.table = table;
+    }
+
+
+    public void reseed(long seed)
+    {
+        random.setSeed(seed);
+    }
+
+
+    /**
+     * @return the state of the spawn sequence, for saving a game
+     * @see GameRandom#getState()
+     */
+    public long getRandomState()
+    {
+        return random.getState();
+    }
+
+
+    /**
+     * Carries on the spawn sequence from a saved state.
+     *
+     * @param state
+     *            a value from getRandomState()
+     */
+    public void setRandomState(long state)
+    {
+        random.setState(state);
+    }
+
+
+    /**
+     * Carries on exactly as another spawner would: the same odds and the
+     * same random sequence from here on.
+     *
+     * @param other
+     *            the spawner to copy
+     */
+    public void copyFrom(Spawner other)
+    {
+        table = other.table;
+        random.setState(other.random.getState());
+    }
+
+
+    /**
+     * @return how many tiles to spawn after the snake eats one, 1 or 2
+     */
+    public int spawnCount()
+    {
+        return table.count(random);
+    }
+
+
+    /**
+     * Places one new box on a uniformly random free cell: away from the
+     * edges, and never on the snake or another box. Nothing is spawned if the
+     * board is full.
+     *
+     * @param board
+     *            the board to spawn on
+     * @param maxBoxValue
+     *            the largest value the snake has held so far, which gates the
+     *            bigger spawn values
+     */
+    public void spawnNewBox(Board board, int maxBoxValue)
+    {
+        int value = table.value(random, maxBoxValue);
+        int cell = board.randomFreeCell(random);
+        if (cell >= 0)
+        {
+            board.addBox(Cells.col(cell), Cells.row(cell), value);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * A bot player. Before every tick it is shown the game through a read-only
+ * GameView and answers with a direction, the same thing a swipe puts in the
+ * game thread's requested direction: Game.step() then decides whether the
+ * turn is allowed. Bots are used as regression players and to try out
+ * balance changes over many games, so a strategy must be deterministic given
+ * the seed reset() passes it.
+ *
+ * A strategy may keep state of its own from tick to tick, so it is only
+ * ever used by one thread and for one game at a time.
+ */
+public interface Strategy
+{
+    /**
+     * Gets ready for a new game. Any randomness the strategy uses must come
+     * from this seed.
+     *
+     * @param seed
+     *            a seed derived from the game's own
+     */
+    void reset(long seed);
+
+
+    /**
+     * @param view
+     *            the game about to be stepped
+     * @return the direction to pass to the next Game.step(), or
+     *         Direction.NONE to keep going the same way
+     */
+    int choose(GameView view);
+}
@@ -0,0 +1,130 @@
+package com.frenchtoastmafia.snake2048.engine;
+
+// -------------------------------------------------------------------------
+/**
+ * The keys behind Game.stateHash(). A state's hash is the XOR of one key per
+ * feature it has, so when a feature comes or goes its key is XORed in or
+ * out and the hash never has to be recomputed. The keys are:
+ *
+ * <ul>
+ * <li>box(cell, exponent) for every loose box</li>
+ * <li>head(cell) for the snake's head</li>
+ * <li>link(cell, direction) for every other segment of the snake, with the
+ * direction to the segment in front of it. The head and the links pin down
+ * the exact path of the body, and a move only changes the links at its two
+ * ends.</li>
+ * <li>value(index, exponent) for the number on every segment, counted from
+ * the tail. The numbers only ever change at the head end, so counting from
+ * the tail leaves every other segment's key alone when one is eaten or
+ * merged away.</li>
+ * <li>direction(d) for the way the snake is moving</li>
+ * <li>score(s), mixed in when the hash is asked for</li>
+ * </ul>
+ *
+ * Keys are worked out from their arguments by the SplitMix64 finalizer
+ * rather than looked up in random tables. That takes no memory however big
+ * the board is, and every device gets the same keys, so hashes can be
+ * compared between a replay and the original game, or between two players.
+ */
+public final class Zobrist
+{
+    private static final long BOX       = 0x1000000000000000L;
+    private static final long HEAD      = 0x2000000000000000L;
+    private static final long LINK      = 0x3000000000000000L;
+    private static final long VALUE     = 0x4000000000000000L;
+    private static final long DIRECTION = 0x5000000000000000L;
+    private static final long SCORE     = 0x6000000000000000L;
+
+
+    private Zobrist()
+    {
+        // static helpers only
+    }
+
+
+    /**
+     * @param cell
+     *            the packed cell the box is on
+     * @param exponent
+     *            the box holds 2^exponent
+     * @return the key of a loose box
+     */
+    public static long box(int cell, int exponent)
+    {
+        return GameRandom.mix(BOX | (long)exponent << 32
+            | (cell & 0xFFFFFFFFL));
+    }
+
+
+    /**
+     * @param cell
+     *            the packed cell the head is on
+     * @return the key of the snake's head
+     */
+    public static long head(int cell)
+    {
+        return GameRandom.mix(HEAD | (cell & 0xFFFFFFFFL));
+    }
+
+
+    /**
+     * @param cell
+     *            the packed cell of a segment behind the head
+     * @param direction
+     *            the direction from it to the segment in front of it
+     * @return the key of that link in the body
+     */
+    public static long link(int cell, int direction)
+    {
+        return GameRandom.mix(LINK | (long)(direction & 3) << 32
+            | (cell & 0xFFFFFFFFL));
+    }
+
+
+    /**
+     * @param index
+     *            the segment, counting from 0 at the tail
+     * @param exponent
+     *            the segment holds 2^exponent
+     * @return the key of that segment's number
+     */
+    public static long value(int index, int exponent)
+    {
+        return GameRandom.mix(VALUE | (long)exponent << 32 | index);
+    }
+
+
+    /**
+     * @param direction
+     *            the direction the snake is moving in, or Direction.NONE
+     * @return the key of the moving direction; 0 for Direction.NONE
+     */
+    public static long direction(int direction)
+    {
+        return direction == Direction.NONE
+            ? 0
+            : GameRandom.mix(DIRECTION | direction);
+    }
+
+
+    /**
+     * @param score
+     *            the score
+     * @return the key of the score
+     */
+    public static long score(int score)
+    {
+        return GameRandom.mix(SCORE | (score & 0xFFFFFFFFL));
+    }
+
+
+    /**
+     * @param value
+     *            a power of two
+     * @return its exponent
+     */
+    public static int exponent(int value)
+    {
+        return Integer.numberOfTrailingZeros(value);
+    }
+}
@@ -0,0 +1,243 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.Game;
+
+// -------------------------------------------------------------------------
+/**
+ * Many games stepped in lockstep, for training agents: one step() call
+ * applies one action to every game. Finished games are restarted on the
+ * spot with a fresh seed, the way GameThread restarts a game when the snake
+ * dies, so every slot always holds a game in play. A game also ends when it
+ * reaches the tick limit, so a policy that circles forever can't hold on to
+ * its slot; those games are flagged as truncated as well as done.
+ *
+ * Everything the caller reads back is kept as one primitive array per field
+ * with one slot per environment: the reward each game earned on the last
+ * step (the score it gained), whether it ended and whether it was cut off,
+ * and the score and length of the game that ended. The arrays are allocated
+ * once and overwritten by every step, so stepping allocates nothing. The
+ * bookkeeping over them is plain counted loops, which the JIT turns into
+ * vector code. The games themselves branch on what each one runs into and
+ * are stepped one after the other.
+ *
+ * Environment i's k-th game gets seed Seeds.game(baseSeed, k * count + i),
+ * counting the games reset() starts. Restarting a game in its slot plays
+ * exactly as a new Game from that seed would, so given the same base seed
+ * and the same actions a batch plays the same games every time.
+ *
+ * A batch is not thread safe. Give each thread a batch of its own.
+ */
+public class BatchEnvironment
+{
+    private final int       count;
+    private final long      maxTicks;
+    private final long      baseSeed;
+    private final Game[]    games;
+
+    /** Each game's score before the step, then after it */
+    private final int[]     scores;
+    private final int[]     nextScores;
+    private final float[]   rewards;
+    private final boolean[] dones;
+    private final boolean[] truncated;
+    /** The score and ticks of the game that ended on the last step */
+    private final int[]     finalScores;
+    private final long[]    finalTicks;
+    /** How many games each environment has started */
+    private final long[]    episodes;
+
+
+    /**
+     * Create a new BatchEnvironment object, with every game started.
+     *
+     * @param count
+     *            how many games to run
+     * @param cols
+     *            the width of every board in cells
+     * @param rows
+     *            the height of every board in cells
+     * @param maxTicks
+     *            end games that last this many ticks
+     * @param baseSeed
+     *            the seed every game's seed is derived from
+     */
+    public BatchEnvironment(
+        int count,
+        int cols,
+        int rows,
+        long maxTicks,
+        long baseSeed)
+    {
+        if (count < 1)
+        {
+            throw new IllegalArgumentException("need at least one game, not "
+                + count);
+        }
+        this.count = count;
+        this.maxTicks = maxTicks;
+        this.baseSeed = baseSeed;
+        games = new Game[count];
+        scores = new int[count];
+        nextScores = new int[count];
+        rewards = new float[count];
+        dones = new boolean[count];
+        truncated = new boolean[count];
+        finalScores = new int[count];
+        finalTicks = new long[count];
+        episodes = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            games[i] = new Game(cols, rows, nextSeed(i));
+        }
+    }
+
+
+    /**
+     * Starts a fresh game in every environment, with new seeds, and clears
+     * the rewards and done flags.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < count; i++)
+        {
+            games[i].restart(nextSeed(i));
+            scores[i] = 0;
+            rewards[i] = 0;
+            dones[i] = false;
+            truncated[i] = false;
+        }
+    }
+
+
+    /**
+     * Advances every game by one tick. Afterwards rewards() holds the score
+     * each game gained on this tick, dones() whether it ended and
+     * truncated() whether it ended at the tick limit. The games that ended
+     * have already been restarted, so they are at the first tick of their
+     * next game, and finalScores() and finalTicks() hold how they went.
+     *
+     * @param actions
+     *            for each environment, the direction to swipe, or
+     *            Direction.NONE to keep going; like a swipe in the game,
+     *            anything that isn't a direction the snake may turn to is
+     *            ignored
+     * @throws IllegalArgumentException
+     *             if there isn't one action per environment
+     */
+    public void step(int[] actions)
+    {
+        if (actions.length != count)
+        {
+            throw new IllegalArgumentException(actions.length
+                + " actions for " + count + " environments");
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            Game game = games[i];
+            boolean alive = game.step(actions[i]);
+            truncated[i] = alive && game.getTick() >= maxTicks;
+            dones[i] = !alive || truncated[i];
+            nextScores[i] = game.score();
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            rewards[i] = nextScores[i] - scores[i];
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            if (dones[i])
+            {
+                finalScores[i] = nextScores[i];
+                finalTicks[i] = games[i].getTick();
+                games[i].restart(nextSeed(i));
+                nextScores[i] = 0;
+            }
+        }
+
+        System.arraycopy(nextScores, 0, scores, 0, count);
+    }
+
+
+    /**
+     * @return the seed for environment i's next game
+     */
+    private long nextSeed(int i)
+    {
+        return Seeds.game(baseSeed, episodes[i]++ * count + i);
+    }
+
+
+    /**
+     * @return how many games this batch runs
+     */
+    public int size()
+    {
+        return count;
+    }
+
+
+    /**
+     * @param i
+     *            an environment
+     * @return the game it is playing; for reading it, e.g. through a
+     *         GameView or an observation encoder, and not for stepping
+     */
+    public Game game(int i)
+    {
+        return games[i];
+    }
+
+
+    /**
+     * @return the score each game gained on the last step; overwritten by
+     *         the next one
+     */
+    public float[] rewards()
+    {
+        return rewards;
+    }
+
+
+    /**
+     * @return whether each game ended on the last step; overwritten by the
+     *         next one
+     */
+    public boolean[] dones()
+    {
+        return dones;
+    }
+
+
+    /**
+     * @return whether each game was cut off at the tick limit on the last
+     *         step, rather than ended by the snake dying; overwritten by the
+     *         next one
+     */
+    public boolean[] truncated()
+    {
+        return truncated;
+    }
+
+
+    /**
+     * @return for each game that ended on the last step, its final score;
+     *         the other slots hold whatever game ended there before
+     */
+    public int[] finalScores()
+    {
+        return finalScores;
+    }
+
+
+    /**
+     * @return for each game that ended on the last step, how many ticks it
+     *         lasted; the other slots hold whatever game ended there before
+     */
+    public long[] finalTicks()
+    {
+        return finalTicks;
+    }
+}
@@ -0,0 +1,356 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.Direction;
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.GameView;
+import com.frenchtoastmafia.snake2048.engine.InputJournal;
+import com.frenchtoastmafia.snake2048.engine.Replay;
+import com.frenchtoastmafia.snake2048.engine.SpawnTable;
+import com.frenchtoastmafia.snake2048.engine.Strategy;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// -------------------------------------------------------------------------
+/**
+ * Fails if a game depends on anything but its board size, seed, spawn table
+ * and inputs, which everything that compares games by seed relies on. Each
+ * check plays seeded games two ways that must come out the same, prints how
+ * many did, and the run exits with status 1 if any didn't.
+ *
+ * <pre>
+ * java -cp target/tools.jar com.frenchtoastmafia.snake2048.tools.DeterminismCheck
+ * </pre>
+ */
+public class DeterminismCheck
+{
+    private static final int  COLS      = 22;
+    private static final int  ROWS      = 38;
+    private static final int  SEEDS     = 200;
+    private static final long MAX_TICKS = 5000;
+
+
+    private DeterminismCheck()
+    {
+        // run through main()
+    }
+
+
+    /**
+     * @param args
+     *            ignored
+     */
+    public static void main(String[] args)
+    {
+        boolean passed = restartIsNewGame();
+        passed &= replayAcrossSessions();
+        passed &= copiesTie();
+        passed &= simulationIgnoresOrder();
+        passed &= batchPlaysNewGames();
+        if (!passed)
+        {
+            System.err.println("games depend on more than their seeds");
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     * A game restarted from a seed, after another game has been played on
+     * its board, must go exactly as a new game from that seed.
+     */
+    private static boolean restartIsNewGame()
+    {
+        int same = 0;
+        for (int seed = 0; seed < SEEDS; seed++)
+        {
+            Game used = new Game(COLS, ROWS, seed + SEEDS);
+            play(used, "greedy", seed + SEEDS);
+            used.restart(seed);
+
+            Game fresh = new Game(COLS, ROWS, seed);
+            if (play(used, "greedy", seed) == play(fresh, "greedy", seed))
+            {
+                same++;
+            }
+        }
+        return report("restart(seed) plays as new Game(seed)", same, SEEDS);
+    }
+
+
+    /**
+     * Records games the way the app does into a journal that spans two
+     * sessions, each starting on a new Game and restarting it for the games
+     * after, and checks that Replay verifies every one of them.
+     */
+    private static boolean replayAcrossSessions()
+    {
+        long[][] sessions = { { 11, 12, 13 }, { 21, 22 } };
+        int verified = 0;
+        int total = 0;
+        try
+        {
+            File file = File.createTempFile("determinism", ".journal");
+            file.delete();
+            try
+            {
+                for (long[] seeds : sessions)
+                {
+                    InputJournal journal = InputJournal.open(file);
+                    Game game = null;
+                    for (long seed : seeds)
+                    {
+                        if (game == null)
+                        {
+                            game = new Game(COLS, ROWS, seed);
+                        }
+                        else
+                        {
+                            game.restart(seed);
+                        }
+                        record(journal, game, seed);
+                        total++;
+                    }
+                    journal.close();
+                }
+
+                RandomAccessFile in = new RandomAccessFile(file, "r");
+                try
+                {
+                    List<Replay.Result> results =
+                        Replay.run(in.getChannel().map(
+                            FileChannel.MapMode.READ_ONLY,
+                            0,
+                            in.length()));
+                    for (Replay.Result result : results)
+                    {
+                        if (result.isVerified())
+                        {
+                            verified++;
+                        }
+                    }
+                    total = Math.max(total, results.size());
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("could not write a journal: " + e);
+            return false;
+        }
+        return report(
+            "Replay verifies games from two sessions",
+            verified,
+            total);
+    }
+
+
+    /**
+     * Two copies of one strategy in a Tournament play the same games, one
+     * after the other on the same Game, so they must tie on every seed.
+     */
+    private static boolean copiesTie()
+    {
+        String[] strategies = { "greedy", "greedy" };
+        int[][] scores = new int[strategies.length][SEEDS];
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            pool.invoke(new TournamentTask(strategies, COLS, ROWS, MAX_TICKS,
+                1, scores, 0, SEEDS));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        int ties = 0;
+        for (int i = 0; i < SEEDS; i++)
+        {
+            if (scores[0][i] == scores[1][i])
+            {
+                ties++;
+            }
+        }
+        return report("greedy against greedy in a Tournament", ties, SEEDS);
+    }
+
+
+    /**
+     * SimulationTask plays a range of games on one Game, restarting it for
+     * each, so every game but the first in a range follows others. Playing
+     * each seed first in a range of its own must give the same distribution
+     * as playing them all together.
+     */
+    private static boolean simulationIgnoresOrder()
+    {
+        Scenario scenario =
+            new Scenario("greedy", SpawnTable.DEFAULT, COLS, ROWS, MAX_TICKS);
+        Distribution alone = new Distribution();
+        Distribution together;
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            for (int i = 0; i < SEEDS; i++)
+            {
+                alone.addAll(pool.invoke(new SimulationTask(scenario, 1, i,
+                    i + 1)));
+            }
+            together = pool.invoke(new SimulationTask(scenario, 1, 0, SEEDS));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        int same = 0;
+        same += same(alone.scores(), together.scores()) ? 1 : 0;
+        same += same(alone.lengths(), together.lengths()) ? 1 : 0;
+        same += same(alone.ticks(), together.ticks()) ? 1 : 0;
+        boolean tiles = alone.unfinished() == together.unfinished();
+        for (int exponent = 0; exponent < 32; exponent++)
+        {
+            tiles &= alone.maxTileCount(exponent)
+                == together.maxTileCount(exponent);
+        }
+        same += tiles ? 1 : 0;
+        return report(
+            "SimulationTask statistics, seeds alone or in ranges",
+            same,
+            4);
+    }
+
+
+    /**
+     * Each game a BatchEnvironment plays in its slot must go, tick for tick,
+     * as a new Game on the seed the class comment gives it.
+     */
+    private static boolean batchPlaysNewGames()
+    {
+        int count = 8;
+        long baseSeed = 1;
+        BatchEnvironment batch =
+            new BatchEnvironment(count, COLS, ROWS, MAX_TICKS / 10, baseSeed);
+        Game[] fresh = new Game[count];
+        long[] episodes = new long[count];
+        boolean[] diverged = new boolean[count];
+        Strategy[] players = new Strategy[count];
+        GameView[] views = new GameView[count];
+        for (int i = 0; i < count; i++)
+        {
+            fresh[i] = new Game(COLS, ROWS, Seeds.game(baseSeed, i));
+            players[i] = Strategies.create("random");
+            players[i].reset(i);
+            views[i] = new GameView(batch.game(i));
+        }
+
+        int[] actions = new int[count];
+        int same = 0;
+        int games = 0;
+        for (long step = 0; step < MAX_TICKS * 4; step++)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                actions[i] = players[i].choose(views[i]);
+                fresh[i].step(actions[i]);
+            }
+            batch.step(actions);
+            for (int i = 0; i < count; i++)
+            {
+                if (batch.dones()[i])
+                {
+                    diverged[i] |= batch.finalScores()[i] != fresh[i].score()
+                        || batch.finalTicks()[i] != fresh[i].getTick();
+                    same += diverged[i] ? 0 : 1;
+                    games++;
+                    diverged[i] = false;
+                    episodes[i]++;
+                    fresh[i] =
+                        new Game(COLS, ROWS, Seeds.game(baseSeed, episodes[i]
+                            * count + i));
+                }
+                diverged[i] |=
+                    batch.game(i).stateHash() != fresh[i].stateHash();
+            }
+        }
+        return report("BatchEnvironment games as new Game(seed)", same, games);
+    }
+
+
+    private static boolean same(Histogram a, Histogram b)
+    {
+        if (a.count() != b.count() || a.min() != b.min() || a.max() != b.max()
+            || a.mean() != b.mean())
+        {
+            return false;
+        }
+        for (int percent = 1; percent < 100; percent++)
+        {
+            if (a.percentile(percent / 100.0) != b.percentile(percent / 100.0))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Plays a game greedily to its end, recording it as GameThread does.
+     */
+    private static void record(InputJournal journal, Game game, long seed)
+        throws IOException
+    {
+        Strategy strategy = Strategies.create("greedy");
+        strategy.reset(seed);
+        GameView view = new GameView(game);
+        journal.startGame(COLS, ROWS, seed);
+        boolean alive = true;
+        while (alive)
+        {
+            int direction = strategy.choose(view);
+            alive = game.step(direction);
+            if (direction != Direction.NONE)
+            {
+                journal.input(game.getTick(), direction);
+            }
+        }
+        journal.endGame(game);
+    }
+
+
+    /**
+     * Plays a game to its end, or MAX_TICKS.
+     *
+     * @return the state hash it ends in, mixed with how long it lasted
+     */
+    static long play(Game game, String strategyName, long strategySeed)
+    {
+        Strategy strategy = Strategies.create(strategyName);
+        strategy.reset(strategySeed);
+        GameView view = new GameView(game);
+        while (game.getTick() < MAX_TICKS && game.step(strategy.choose(view)))
+        {
+            // keep going
+        }
+        return game.stateHash() * 31 + game.getTick();
+    }
+
+
+    private static boolean report(String check, int same, int total)
+    {
+        System.out.println(check + ": " + same + " of " + total + " the same");
+        return same == total;
+    }
+}
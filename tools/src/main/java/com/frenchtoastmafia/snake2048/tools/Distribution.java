@@ -0,0 +1,107 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+// -------------------------------------------------------------------------
+/**
+ * How a batch of games ended: the distribution of final scores, snake
+ * lengths and game lengths in ticks, and how many games reached each largest
+ * tile. Batches played on different threads are combined with addAll().
+ */
+public class Distribution
+{
+    private final Histogram scores   = new Histogram();
+    private final Histogram lengths  = new Histogram();
+    private final Histogram ticks    = new Histogram();
+    /** Games by the exponent of the largest tile the snake held */
+    private final long[]    maxTiles = new long[32];
+    /** Games stopped at the tick limit rather than by the snake dying */
+    private long            unfinished;
+
+
+    /**
+     * Records one game.
+     *
+     * @param score
+     *            the final score
+     * @param length
+     *            how many tiles the snake had at the end
+     * @param tick
+     *            how many ticks the game lasted
+     * @param maxTile
+     *            the largest number the snake held
+     * @param finished
+     *            false if the game was cut off at the tick limit
+     */
+    public void add(int score, int length, long tick, int maxTile,
+        boolean finished)
+    {
+        scores.add(score);
+        lengths.add(length);
+        ticks.add((int)Math.min(tick, Integer.MAX_VALUE));
+        maxTiles[31 - Integer.numberOfLeadingZeros(Math.max(1, maxTile))]++;
+        if (!finished)
+        {
+            unfinished++;
+        }
+    }
+
+
+    /**
+     * @param other
+     *            games to add to these; left as they are
+     */
+    public void addAll(Distribution other)
+    {
+        scores.addAll(other.scores);
+        lengths.addAll(other.lengths);
+        ticks.addAll(other.ticks);
+        for (int i = 0; i < maxTiles.length; i++)
+        {
+            maxTiles[i] += other.maxTiles[i];
+        }
+        unfinished += other.unfinished;
+    }
+
+
+    public long games()
+    {
+        return scores.count();
+    }
+
+
+    public Histogram scores()
+    {
+        return scores;
+    }
+
+
+    public Histogram lengths()
+    {
+        return lengths;
+    }
+
+
+    public Histogram ticks()
+    {
+        return ticks;
+    }
+
+
+    /**
+     * @param exponent
+     *            e.g. 11 for 2048
+     * @return how many games had 2^exponent as their largest tile
+     */
+    public long maxTileCount(int exponent)
+    {
+        return maxTiles[exponent];
+    }
+
+
+    /**
+     * @return how many games were cut off at the tick limit
+     */
+    public long unfinished()
+    {
+        return unfinished;
+    }
+}
@@ -0,0 +1,400 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// -------------------------------------------------------------------------
+/**
+ * Hosts a BatchEnvironment for another process, such as a Python training
+ * loop, over stdin and stdout. Commands and their replies are a few bytes
+ * per game; the observations never go through the pipe. They are written by
+ * ObservationEncoders straight into a ring of frames in a memory-mapped
+ * file, which the client maps as well and reads in place.
+ *
+ * <pre>
+ * java -cp target/tools.jar com.frenchtoastmafia.snake2048.tools.EnvServer \
+ *     --envs 1024 --frames /dev/shm/snake.frames
+ * </pre>
+ *
+ * Options:
+ *
+ * <pre>
+ * --envs N         games to host (64)
+ * --board CxR      board size in cells (22x38)
+ * --max-ticks N    cut games off after this many ticks (no limit, as in the
+ *                  app)
+ * --seed N         base seed; the same seed plays the same games (1)
+ * --frames path    the frame ring file, created or overwritten (required)
+ * --slots N        frames in the ring (2)
+ * </pre>
+ *
+ * The rules are the app's: a swipe turns the snake if it may turn that way,
+ * and a game that ends is restarted at once with a fresh seed.
+ *
+ * Everything is little-endian. On start the server writes HELLO and encodes
+ * every game into frame 0. Then it reads one command at a time and answers
+ * each RESET or STEP with a REPLY once the new frame is in the ring:
+ *
+ * <pre>
+ * HELLO  int MAGIC, int VERSION, int envs, int cols, int rows,
+ *        int observation bytes per game, int slots
+ * RESET  byte 1                       restart every game
+ * STEP   byte 2, byte[envs] actions   a Direction per game, -1 for none
+ * CLOSE  byte 3                       the server exits; so does end of input
+ * REPLY  long frame, float[envs] rewards, byte[envs] done,
+ *        byte[envs] truncated, int[envs] final score (where done)
+ * </pre>
+ *
+ * Frame n is in slot n % slots. The frame file is a 32 byte header (int
+ * MAGIC, VERSION, envs, observation bytes, slots, cols, rows, 0) followed by
+ * the slots; game i's observation is at 32 + (slot * envs + i) *
+ * observation bytes, laid out as described in ObservationEncoder. A frame
+ * stays put until slots more frames have been written, so a client may hold
+ * on to the last slots - 1 frames, e.g. to stack them.
+ *
+ * With one slot the encoders write in place, and only what each tick
+ * changed; with more, they write a working copy that is copied into each
+ * new slot in one bulk copy per frame.
+ */
+public class EnvServer
+{
+    /** "S2KE" */
+    public static final int   MAGIC       = 0x53324b45;
+    public static final int   VERSION     = 1;
+    public static final int   FILE_HEADER = 32;
+
+    public static final int   RESET       = 1;
+    public static final int   STEP        = 2;
+    public static final int   CLOSE       = 3;
+
+    private final BatchEnvironment     batch;
+    private final ObservationEncoder[] encoders;
+    private final int                  observationSize;
+    private final int                  slots;
+    private final MappedByteBuffer     frames;
+    /** What the encoders write to; the only slot if there is just one */
+    private final ByteBuffer           live;
+    private final ByteBuffer           reply;
+    private final byte[]               actionBytes;
+    private final int[]                actions;
+    private long                       frame;
+
+
+    /**
+     * Create a new EnvServer object, with every game started and encoded
+     * into frame 0.
+     *
+     * @param batch
+     *            the games to serve
+     * @param framesFile
+     *            the frame ring file, created or overwritten
+     * @param slots
+     *            how many frames the ring holds
+     * @throws IOException
+     *             if the file can't be created and mapped
+     */
+    public EnvServer(BatchEnvironment batch, File framesFile, int slots)
+        throws IOException
+    {
+        this.batch = batch;
+        this.slots = slots;
+        int envs = batch.size();
+        int cols = batch.game(0).getBoard().getCols();
+        int rows = batch.game(0).getBoard().getRows();
+        observationSize = ObservationEncoder.size(cols, rows);
+        long frameBytes = (long)envs * observationSize;
+        if (slots < 1 || FILE_HEADER + frameBytes * slots > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("can't map " + slots
+                + " frames of " + frameBytes + " bytes");
+        }
+
+        RandomAccessFile file = new RandomAccessFile(framesFile, "rw");
+        try
+        {
+            file.setLength(FILE_HEADER + frameBytes * slots);
+            frames =
+                file.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE,
+                    0,
+                    file.length());
+        }
+        finally
+        {
+            // the mapping stays valid once the file is closed
+            file.close();
+        }
+        frames.order(ByteOrder.LITTLE_ENDIAN);
+        frames.putInt(0, MAGIC);
+        frames.putInt(4, VERSION);
+        frames.putInt(8, envs);
+        frames.putInt(12, observationSize);
+        frames.putInt(16, slots);
+        frames.putInt(20, cols);
+        frames.putInt(24, rows);
+        frames.putInt(28, 0);
+
+        live = slots == 1
+            ? slice(frames, FILE_HEADER, (int)frameBytes)
+            : ByteBuffer.allocateDirect((int)frameBytes);
+        encoders = new ObservationEncoder[envs];
+        for (int i = 0; i < envs; i++)
+        {
+            encoders[i] =
+                new ObservationEncoder(batch.game(i), slice(live, i
+                    * observationSize, observationSize));
+        }
+        publish();
+
+        // frame, then per game a float, two bytes and an int
+        reply = ByteBuffer.allocate(8 + envs * 10);
+        reply.order(ByteOrder.LITTLE_ENDIAN);
+        actionBytes = new byte[envs];
+        actions = new int[envs];
+    }
+
+
+    /**
+     * Answers commands until CLOSE or the end of the input.
+     *
+     * @param in
+     *            where commands come from
+     * @param out
+     *            where HELLO and the replies go
+     * @throws IOException
+     *             if either stream fails
+     */
+    public void serve(InputStream in, OutputStream out)
+        throws IOException
+    {
+        ByteBuffer hello = ByteBuffer.allocate(28);
+        hello.order(ByteOrder.LITTLE_ENDIAN);
+        hello.putInt(MAGIC).putInt(VERSION).putInt(batch.size());
+        hello.putInt(batch.game(0).getBoard().getCols());
+        hello.putInt(batch.game(0).getBoard().getRows());
+        hello.putInt(observationSize).putInt(slots);
+        out.write(hello.array());
+        out.flush();
+
+        while (true)
+        {
+            int command = in.read();
+            if (command < 0 || command == CLOSE)
+            {
+                return;
+            }
+            else if (command == RESET)
+            {
+                batch.reset();
+            }
+            else if (command == STEP)
+            {
+                readFully(in, actionBytes);
+                for (int i = 0; i < actions.length; i++)
+                {
+                    actions[i] = actionBytes[i];
+                }
+                batch.step(actions);
+            }
+            else
+            {
+                throw new IOException("unknown command " + command);
+            }
+
+            for (ObservationEncoder encoder : encoders)
+            {
+                encoder.update();
+            }
+            frame++;
+            publish();
+            writeReply(command == STEP);
+            out.write(reply.array());
+            out.flush();
+        }
+    }
+
+
+    /**
+     * Puts the current frame in its slot, if the encoders didn't write it
+     * there already.
+     */
+    private void publish()
+    {
+        if (slots == 1)
+        {
+            return;
+        }
+        int size = live.capacity();
+        int slot = (int)(frame % slots);
+        slice(frames, FILE_HEADER + slot * size, size).put(live.duplicate());
+    }
+
+
+    private void writeReply(boolean stepped)
+    {
+        reply.clear();
+        reply.putLong(frame);
+        float[] rewards = batch.rewards();
+        boolean[] dones = batch.dones();
+        boolean[] truncated = batch.truncated();
+        int[] finalScores = batch.finalScores();
+        int envs = batch.size();
+        for (int i = 0; i < envs; i++)
+        {
+            reply.putFloat(stepped ? rewards[i] : 0);
+        }
+        for (int i = 0; i < envs; i++)
+        {
+            reply.put((byte)(stepped && dones[i] ? 1 : 0));
+        }
+        for (int i = 0; i < envs; i++)
+        {
+            reply.put((byte)(stepped && truncated[i] ? 1 : 0));
+        }
+        for (int i = 0; i < envs; i++)
+        {
+            reply.putInt(stepped && dones[i] ? finalScores[i] : 0);
+        }
+    }
+
+
+    /**
+     * @return a buffer over length bytes of another from offset on
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+    {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+
+
+    private static void readFully(InputStream in, byte[] bytes)
+        throws IOException
+    {
+        int read = 0;
+        while (read < bytes.length)
+        {
+            int count = in.read(bytes, read, bytes.length - read);
+            if (count < 0)
+            {
+                throw new EOFException("input ended in the middle of a STEP");
+            }
+            read += count;
+        }
+    }
+
+
+    /**
+     * @param args
+     *            the options above
+     */
+    public static void main(String[] args)
+    {
+        int envs = 64;
+        int cols = 22;
+        int rows = 38;
+        long maxTicks = Long.MAX_VALUE;
+        long seed = 1;
+        File framesFile = null;
+        int slots = 2;
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                String option = args[i];
+                if (i + 1 == args.length)
+                {
+                    throw new IllegalArgumentException(option
+                        + " needs a value");
+                }
+                String value = args[++i];
+                if (option.equals("--envs"))
+                {
+                    envs = Integer.parseInt(value);
+                }
+                else if (option.equals("--board"))
+                {
+                    String[] size = value.split("x");
+                    cols = Integer.parseInt(size[0]);
+                    rows = Integer.parseInt(size[1]);
+                }
+                else if (option.equals("--max-ticks"))
+                {
+                    maxTicks = Long.parseLong(value);
+                }
+                else if (option.equals("--seed"))
+                {
+                    seed = Long.parseLong(value);
+                }
+                else if (option.equals("--frames"))
+                {
+                    framesFile = new File(value);
+                }
+                else if (option.equals("--slots"))
+                {
+                    slots = Integer.parseInt(value);
+                }
+                else
+                {
+                    throw new IllegalArgumentException("unknown option "
+                        + option);
+                }
+            }
+            if (framesFile == null)
+            {
+                throw new IllegalArgumentException("--frames is required");
+            }
+            if (envs < 1 || cols < 1 || rows < 1 || slots < 1)
+            {
+                throw new IllegalArgumentException(
+                    "--envs, --board and --slots must be at least 1");
+            }
+        }
+        catch (RuntimeException e)
+        {
+            System.err.println(e.getMessage());
+            System.err.println("see the EnvServer doc comment for usage");
+            System.exit(2);
+        }
+
+        try
+        {
+            EnvServer server =
+                new EnvServer(new BatchEnvironment(envs, cols, rows, maxTicks,
+                    seed), framesFile, slots);
+            // stdout carries the protocol, so nothing else may print to it
+            server.serve(
+                new BufferedInputStream(new FileInputStream(FileDescriptor.in)),
+                new BufferedOutputStream(new FileOutputStream(
+                    FileDescriptor.out)));
+        }
+        catch (IllegalArgumentException e)
+        {
+            // e.g. a ring too big to map
+            System.err.println(e.getMessage());
+            System.err.println("see the EnvServer doc comment for usage");
+            System.exit(2);
+        }
+        catch (IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+// -------------------------------------------------------------------------
+/**
+ * Counts non-negative ints in a fixed number of buckets, so millions of
+ * samples take a few kilobytes and two histograms merge in one pass. Values
+ * below 64 get a bucket each; above that every power of two is split into
+ * 32 buckets, so a percentile is never off by more than about 3%. The count,
+ * sum, smallest and largest value are kept exactly.
+ */
+public class Histogram
+{
+    private static final int EXACT     = 64;
+    private static final int SUB_BITS  = 5;
+    private static final int SUBS      = 1 << SUB_BITS;
+    /** Enough buckets for any int: powers of two 2^6 up to 2^30 */
+    private static final int BUCKETS   = EXACT + (31 - 6) * SUBS;
+
+    private final long[]     counts    = new long[BUCKETS];
+    private long             count;
+    private long             sum;
+    private int              min       = Integer.MAX_VALUE;
+    private int              max       = Integer.MIN_VALUE;
+
+
+    /**
+     * @param value
+     *            a sample; must not be negative
+     */
+    public void add(int value)
+    {
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+
+    /**
+     * Adds every sample of another histogram to this one.
+     *
+     * @param other
+     *            the histogram to add; left as it is
+     */
+    public void addAll(Histogram other)
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+
+    /**
+     * @param fraction
+     *            in [0, 1], e.g. 0.9 for the 90th percentile
+     * @return the smallest value of the bucket the percentile falls in,
+     *         clamped to the exact range seen; 0 if there are no samples
+     */
+    public int percentile(double fraction)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+            {
+                return Math.max(min, Math.min(max, lowest(i)));
+            }
+        }
+        return max;
+    }
+
+
+    public long count()
+    {
+        return count;
+    }
+
+
+    public double mean()
+    {
+        return count == 0 ? 0 : (double)sum / count;
+    }
+
+
+    public int min()
+    {
+        return count == 0 ? 0 : min;
+    }
+
+
+    public int max()
+    {
+        return count == 0 ? 0 : max;
+    }
+
+
+    private static int bucket(int value)
+    {
+        if (value < EXACT)
+        {
+            return value;
+        }
+        int power = 31 - Integer.numberOfLeadingZeros(value);
+        int sub = (value >>> (power - SUB_BITS)) & (SUBS - 1);
+        return EXACT + (power - 6) * SUBS + sub;
+    }
+
+
+    private static int lowest(int bucket)
+    {
+        if (bucket < EXACT)
+        {
+            return bucket;
+        }
+        int power = (bucket - EXACT) / SUBS + 6;
+        int sub = (bucket - EXACT) % SUBS;
+        return (SUBS + sub) << (power - SUB_BITS);
+    }
+}
@@ -0,0 +1,295 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.Direction;
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.GameRandom;
+import com.frenchtoastmafia.snake2048.engine.GameView;
+import com.frenchtoastmafia.snake2048.engine.Strategy;
+
+// -------------------------------------------------------------------------
+/**
+ * A reference lookahead player: open-loop Monte Carlo tree search. Every
+ * tick it plays the game forward a few hundred times on a scratch copy, each
+ * time with freshly guessed spawns, and swipes whichever way did best.
+ *
+ * Each playout copies the current state onto the scratch game with
+ * Game.copyFrom(GameView, long), which takes a few array copies and never
+ * sees the real spawn sequence. It then walks down the tree of swipes picking
+ * by UCB1, adds one new node, and finishes with a rollout played by the
+ * greedy strategy, so that playouts actually eat and merge. The tree is keyed
+ * by the swipes alone, not by the states they led to ("open loop"), so the
+ * same node stands for every spawn outcome and the search averages over them,
+ * the way expectimax would. A playout is worth SURVIVAL, a quarter, if the
+ * snake is still alive at the end, plus up to 1 more for the progress it made
+ * on the way: the score, and a little for every box eaten, since most boxes
+ * only pay off several merges later. Progress is discounted by how many ticks
+ * it took, or every first move would look as good as any other whenever the
+ * rollout can reach the same box from all of them.
+ *
+ * All the tree's arrays are allocated once, so deciding a move allocates
+ * nothing.
+ */
+public class MonteCarloPlanner
+    implements Strategy
+{
+    /** How far past the tree each playout runs, in ticks */
+    private static final int    ROLLOUT_TICKS = 32;
+    /** How much exploring is worth against the value found so far */
+    private static final double EXPLORATION   = 1.0;
+    /** What a playout that ends alive is worth, before its progress */
+    private static final double SURVIVAL      = 0.25;
+    /** Progress of this much is worth 0.5 */
+    private static final double SCORE_SCALE   = 32;
+    /** How much progress eating a box is, in score */
+    private static final int    EAT_SCORE     = 4;
+    /** How much less progress is worth for every tick it takes */
+    private static final double DISCOUNT      = 0.95;
+
+    private final int           playouts;
+    private final int           maxDepth;
+    private final GameRandom    random        = new GameRandom(0);
+
+    /** Per node, the child for each direction, or 0 if there is none yet */
+    private final int[]         children;
+    private final int[]         visits;
+    private final double[]      values;
+    private int                 nodeCount;
+    /** The nodes the current playout went through, root first */
+    private final int[]         path;
+    private final int[]         legal         = new int[4];
+    private final Strategy      rollout       = Strategies.create("greedy");
+
+    private Game                scratch;
+    private GameView            scratchView;
+    /** The current playout's discounted progress so far */
+    private double              progress;
+    /** What progress on the next tick of the playout is worth */
+    private double              weight;
+    private long                totalPlayouts;
+
+
+    /**
+     * Create a new MonteCarloPlanner object.
+     *
+     * @param playouts
+     *            how many playouts to run for each move
+     * @param maxDepth
+     *            how many swipes deep the tree may grow
+     */
+    public MonteCarloPlanner(int playouts, int maxDepth)
+    {
+        this.playouts = playouts;
+        this.maxDepth = maxDepth;
+        // every playout adds at most one node to the root
+        children = new int[(playouts + 1) * 4];
+        visits = new int[playouts + 1];
+        values = new double[playouts + 1];
+        path = new int[maxDepth + 1];
+    }
+
+
+    public void reset(long seed)
+    {
+        random.setSeed(seed);
+    }
+
+
+    public int choose(GameView view)
+    {
+        if (scratch == null || scratch.getBoard().getCols() != view.getCols()
+            || scratch.getBoard().getRows() != view.getRows())
+        {
+            scratch = new Game(view.getCols(), view.getRows(), 0);
+            scratchView = new GameView(scratch);
+        }
+        clearNode(0);
+        nodeCount = 1;
+
+        for (int i = 0; i < playouts; i++)
+        {
+            playout(view);
+        }
+        totalPlayouts += playouts;
+
+        int best = Direction.NONE;
+        int bestVisits = 0;
+        for (int direction = 0; direction < 4; direction++)
+        {
+            int child = children[direction];
+            if (child != 0 && visits[child] > bestVisits)
+            {
+                best = direction;
+                bestVisits = visits[child];
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * @return how many playouts this planner has run in all, for measuring
+     *         how fast it searches
+     */
+    public long getTotalPlayouts()
+    {
+        return totalPlayouts;
+    }
+
+
+    private void playout(GameView view)
+    {
+        scratch.copyFrom(view, random.nextLong());
+        progress = 0;
+        weight = 1;
+
+        int node = 0;
+        int depth = 0;
+        path[0] = 0;
+        boolean alive = !scratch.isOver();
+        while (alive && depth < maxDepth)
+        {
+            int direction = select(node);
+            if (direction < 0)
+            {
+                break;
+            }
+            int child = children[node * 4 + direction];
+            boolean expanded = child == 0;
+            if (expanded)
+            {
+                child = nodeCount++;
+                clearNode(child);
+                children[node * 4 + direction] = child;
+            }
+            alive = step(direction);
+            node = child;
+            path[++depth] = node;
+            if (expanded)
+            {
+                break;
+            }
+        }
+
+        rollout.reset(random.nextLong());
+        for (int tick = 0; alive && tick < ROLLOUT_TICKS; tick++)
+        {
+            alive = step(rollout.choose(scratchView));
+        }
+
+        double value =
+            (alive ? SURVIVAL : 0) + progress / (progress + SCORE_SCALE);
+        for (int i = 0; i <= depth; i++)
+        {
+            visits[path[i]]++;
+            values[path[i]] += value;
+        }
+    }
+
+
+    /**
+     * Steps the scratch game and adds up the progress the snake made.
+     * Eating always changes the snake's size or its score.
+     */
+    private boolean step(int direction)
+    {
+        int size = scratch.getSnake().size();
+        int score = scratch.score();
+        boolean alive = scratch.step(direction);
+        if (scratch.getSnake().size() != size || scratch.score() != score)
+        {
+            progress += weight * (scratch.score() - score + EAT_SCORE);
+        }
+        weight *= DISCOUNT;
+        return alive;
+    }
+
+
+    /**
+     * Picks the swipe to follow from a node, in the scratch game's current
+     * state: one that hasn't been tried from there yet if there is one,
+     * otherwise the one with the best UCB1 score.
+     *
+     * @return the direction, or -1 if there is nothing to pick from
+     */
+    private int select(int node)
+    {
+        int count = legalDirections();
+        if (count == 0)
+        {
+            return -1;
+        }
+
+        int untried = -1;
+        int seen = 0;
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        double logVisits = Math.log(Math.max(1, visits[node]));
+        for (int i = 0; i < count; i++)
+        {
+            int direction = legal[i];
+            int child = children[node * 4 + direction];
+            if (child == 0)
+            {
+                // a uniformly random one of the untried, by reservoir
+                seen++;
+                if (random.nextInt(seen) == 0)
+                {
+                    untried = direction;
+                }
+                continue;
+            }
+            double score =
+                values[child] / visits[child] + EXPLORATION
+                    * Math.sqrt(logVisits / visits[child]);
+            if (score > bestScore)
+            {
+                best = direction;
+                bestScore = score;
+            }
+        }
+        return untried >= 0 ? untried : best;
+    }
+
+
+    /**
+     * Fills legal with the directions the scratch snake may go next that
+     * don't kill it on the spot, or every direction it may go if they all
+     * do.
+     *
+     * @return how many there are
+     */
+    private int legalDirections()
+    {
+        int count = 0;
+        for (int direction = 0; direction < 4; direction++)
+        {
+            if (Strategies.isAllowed(scratchView, direction)
+                && Strategies.isSafe(scratchView, direction))
+            {
+                legal[count++] = direction;
+            }
+        }
+        if (count == 0)
+        {
+            for (int direction = 0; direction < 4; direction++)
+            {
+                if (Strategies.isAllowed(scratchView, direction))
+                {
+                    legal[count++] = direction;
+                }
+            }
+        }
+        return count;
+    }
+
+
+    private void clearNode(int node)
+    {
+        visits[node] = 0;
+        values[node] = 0;
+        children[node * 4] = 0;
+        children[node * 4 + 1] = 0;
+        children[node * 4 + 2] = 0;
+        children[node * 4 + 3] = 0;
+    }
+}
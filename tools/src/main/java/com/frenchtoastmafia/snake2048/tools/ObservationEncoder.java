@@ -0,0 +1,285 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.Board;
+import com.frenchtoastmafia.snake2048.engine.Cells;
+import com.frenchtoastmafia.snake2048.engine.ChangedCells;
+import com.frenchtoastmafia.snake2048.engine.Direction;
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.Snake;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+// -------------------------------------------------------------------------
+/**
+ * Writes what an agent sees of a game straight into a buffer the caller owns,
+ * such as a direct ByteBuffer shared with native code or a memory-mapped
+ * file, as fixed planes of one element per cell. After the first full
+ * encode() only what the last tick changed is rewritten: the cells on the
+ * board's ChangedCells list, the links at the head, and the top of the chain.
+ * A tick therefore costs the same however big the board and the snake are,
+ * and nothing is allocated or copied.
+ *
+ * The layout, in elements (bytes or floats), for a board of P = cols * rows
+ * cells indexed row * cols + col:
+ *
+ * <pre>
+ * [0, 4)             HEADER     the moving direction, one-hot by
+ *                               Direction; all 0 before the snake moves
+ * [4, 4 + P)         OCCUPANCY  1 where the snake covers the cell
+ * [4 + P, 4 + 2P)    ORDER      for a snake cell, 1 + the direction to the
+ *                               segment in front of it, or 5 for the head;
+ *                               following these from the tail walks the
+ *                               snake in order. 0 elsewhere.
+ * [4 + 2P, 4 + 3P)   BOXES      the exponent of the loose box on the cell,
+ *                               0 if there is none
+ * [4 + 3P, 4 + 4P)   CHAIN      the exponents of the snake's numbers, from
+ *                               the tail; 0 past the head
+ * </pre>
+ *
+ * The snake's numbers are a chain of their own rather than a plane, because
+ * every segment keeps its number as the body slides onto a new cell: a
+ * plane of them would change under the whole snake every tick, while the
+ * chain, counted from the tail, only ever changes at the head end.
+ *
+ * Call update() after every step of the game, restart included; if a tick
+ * was missed, or the whole board changed, it encodes everything again.
+ */
+public class ObservationEncoder
+{
+    /** How many elements come before the planes */
+    public static final int HEADER    = 4;
+    /** Where each part starts, in planes of P elements after the header */
+    public static final int OCCUPANCY = 0;
+    public static final int ORDER     = 1;
+    public static final int BOXES     = 2;
+    public static final int CHAIN     = 3;
+    public static final int PLANES    = 4;
+
+    /** The ORDER of the head */
+    public static final int HEAD      = 5;
+
+    private final Game        game;
+    private final Board       board;
+    private final Snake       snake;
+    private final int         cols;
+    private final int         cells;
+    private final ByteBuffer  bytes;
+    private final FloatBuffer floats;
+
+    /** The tick and the snake length the buffer shows */
+    private long              lastTick;
+    private int               lastLength;
+
+
+    /**
+     * Create a new ObservationEncoder object writing bytes, and encode the
+     * game's current state.
+     *
+     * @param game
+     *            the game to encode
+     * @param out
+     *            where to write, from index 0; at least size() bytes
+     * @throws IllegalArgumentException
+     *             if the buffer is too small
+     */
+    public ObservationEncoder(Game game, ByteBuffer out)
+    {
+        this(game, out, null, out.capacity());
+    }
+
+
+    /**
+     * Create a new ObservationEncoder object writing floats, and encode the
+     * game's current state.
+     *
+     * @param game
+     *            the game to encode
+     * @param out
+     *            where to write, from index 0; at least size() floats
+     * @throws IllegalArgumentException
+     *             if the buffer is too small
+     */
+    public ObservationEncoder(Game game, FloatBuffer out)
+    {
+        this(game, null, out, out.capacity());
+    }
+
+
+    private ObservationEncoder(
+        Game game,
+        ByteBuffer bytes,
+        FloatBuffer floats,
+        int capacity)
+    {
+        this.game = game;
+        board = game.getBoard();
+        snake = game.getSnake();
+        cols = board.getCols();
+        cells = cols * board.getRows();
+        this.bytes = bytes;
+        this.floats = floats;
+        if (capacity < size(cols, board.getRows()))
+        {
+            throw new IllegalArgumentException("a " + cols + "x"
+                + board.getRows() + " observation needs "
+                + size(cols, board.getRows()) + " elements, not " + capacity);
+        }
+        encode();
+    }
+
+
+    /**
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     * @return how many elements an observation of that board takes
+     */
+    public static int size(int cols, int rows)
+    {
+        return HEADER + PLANES * cols * rows;
+    }
+
+
+    /**
+     * Writes the whole observation from scratch.
+     */
+    public void encode()
+    {
+        for (int index = 0; index < cells; index++)
+        {
+            writeCell(Cells.pack(index % cols, index / cols), index);
+        }
+        // tail first, so that a dead head on the body wins, as it does in
+        // update()
+        int length = snake.size();
+        for (int i = length - 1; i >= 0; i--)
+        {
+            writeOrder(i);
+        }
+        for (int slot = 0; slot < cells; slot++)
+        {
+            writeChain(slot, length);
+        }
+        writeHeader();
+        lastTick = game.getTick();
+        lastLength = length;
+    }
+
+
+    /**
+     * Brings the observation up to date with the tick just played, from the
+     * board's list of changed cells.
+     */
+    public void update()
+    {
+        ChangedCells changes = board.changes();
+        if (changes.isAll() || game.getTick() != lastTick + 1)
+        {
+            // a restart, a copied game or a missed tick
+            encode();
+            return;
+        }
+
+        for (int i = 0; i < changes.size(); i++)
+        {
+            int cell = changes.cell(i);
+            writeCell(cell, Cells.row(cell) * cols + Cells.col(cell));
+        }
+
+        // The body never moves, so the only links that change are at the
+        // head: a new head, and in front of an eaten box, a second one.
+        // Merges only take cells away at the tail, which are on the list.
+        int length = snake.size();
+        for (int i = Math.min(length, 3) - 1; i >= 0; i--)
+        {
+            writeOrder(i);
+        }
+
+        // the chain only changes at its top
+        int from = Math.max(0, Math.min(lastLength, length) - 1);
+        for (int slot = from; slot < lastLength || slot < length; slot++)
+        {
+            writeChain(slot, length);
+        }
+        writeHeader();
+        lastTick = game.getTick();
+        lastLength = length;
+    }
+
+
+    /**
+     * Writes a cell's occupancy and box, and clears its order if the snake
+     * isn't on it; the snake's cells get theirs from writeOrder().
+     */
+    private void writeCell(int cell, int index)
+    {
+        boolean occupied = board.isOccupied(cell);
+        set(HEADER + OCCUPANCY * cells + index, occupied ? 1 : 0);
+        int box = board.boxAt(cell);
+        set(HEADER + BOXES * cells + index, box < 0
+            ? 0
+            : Integer.numberOfTrailingZeros(board.boxValue(box)));
+        if (!occupied)
+        {
+            set(HEADER + ORDER * cells + index, 0);
+        }
+    }
+
+
+    /**
+     * Writes the order of the segment with the given index from the head.
+     */
+    private void writeOrder(int segment)
+    {
+        int cell = snake.cell(segment);
+        int col = Cells.col(cell);
+        int row = Cells.row(cell);
+        if (!board.contains(col, row))
+        {
+            // a dead head, off the board
+            return;
+        }
+        int order = HEAD;
+        if (segment > 0)
+        {
+            order = 1 + Direction.between(cell, snake.cell(segment - 1));
+        }
+        set(HEADER + ORDER * cells + row * cols + col, order);
+    }
+
+
+    private void writeChain(int slot, int length)
+    {
+        if (slot >= cells)
+        {
+            return;
+        }
+        set(HEADER + CHAIN * cells + slot, slot < length
+            ? snake.exponent(length - 1 - slot)
+            : 0);
+    }
+
+
+    private void writeHeader()
+    {
+        int direction = snake.getMovingDirection();
+        for (int d = 0; d < HEADER; d++)
+        {
+            set(d, d == direction ? 1 : 0);
+        }
+    }
+
+
+    private void set(int index, int value)
+    {
+        if (bytes != null)
+        {
+            bytes.put(index, (byte)value);
+        }
+        else
+        {
+            floats.put(index, value);
+        }
+    }
+}
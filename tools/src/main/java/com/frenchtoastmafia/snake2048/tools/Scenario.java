@@ -0,0 +1,83 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.SpawnTable;
+
+// -------------------------------------------------------------------------
+/**
+ * One point of a simulation grid: who plays, by which spawn odds, on how big
+ * a board, and for how long at most.
+ */
+public class Scenario
+{
+    private final String     strategy;
+    private final SpawnTable table;
+    private final int        cols;
+    private final int        rows;
+    private final long       maxTicks;
+
+
+    /**
+     * Create a new Scenario object.
+     *
+     * @param strategy
+     *            the name of the strategy that plays, one of
+     *            Strategies.NAMES
+     * @param table
+     *            the spawn odds
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     * @param maxTicks
+     *            games still going after this many ticks are cut off, so a
+     *            strategy that never dies can't stall the run
+     */
+    public Scenario(String strategy, SpawnTable table, int cols, int rows,
+        long maxTicks)
+    {
+        // fail here rather than on a worker thread
+        Strategies.create(strategy);
+        this.strategy = strategy;
+        this.table = table;
+        this.cols = cols;
+        this.rows = rows;
+        this.maxTicks = maxTicks;
+    }
+
+
+    public String getStrategy()
+    {
+        return strategy;
+    }
+
+
+    public SpawnTable getTable()
+    {
+        return table;
+    }
+
+
+    public int getCols()
+    {
+        return cols;
+    }
+
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+
+    public long getMaxTicks()
+    {
+        return maxTicks;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return strategy + " " + cols + "x" + rows + " " + table;
+    }
+}
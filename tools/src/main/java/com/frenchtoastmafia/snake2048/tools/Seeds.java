@@ -0,0 +1,43 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.GameRandom;
+
+// -------------------------------------------------------------------------
+/**
+ * Where the seeds of a batch of games come from. Game i of a run always gets
+ * the same seed for a given base seed, whichever thread plays it and
+ * whatever plays it, so runs with the same base seed are played on the same
+ * games and can be compared game by game.
+ */
+public final class Seeds
+{
+    private Seeds()
+    {
+        // static helpers only
+    }
+
+
+    /**
+     * @param baseSeed
+     *            the seed of the whole run
+     * @param index
+     *            which game of the run
+     * @return the seed for that game
+     */
+    public static long game(long baseSeed, long index)
+    {
+        return GameRandom.mix(baseSeed + index * 0x9e3779b97f4a7c15L);
+    }
+
+
+    /**
+     * @param gameSeed
+     *            a seed from game()
+     * @return the seed for the strategy playing that game, unrelated to the
+     *         spawns'
+     */
+    public static long strategy(long gameSeed)
+    {
+        return GameRandom.mix(gameSeed);
+    }
+}
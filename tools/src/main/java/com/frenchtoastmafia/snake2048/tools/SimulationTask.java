@@ -0,0 +1,114 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.GameView;
+import com.frenchtoastmafia.snake2048.engine.Snake;
+import com.frenchtoastmafia.snake2048.engine.Strategy;
+import java.util.concurrent.RecursiveTask;
+
+// -------------------------------------------------------------------------
+/**
+ * Plays a range of games of one Scenario on a ForkJoinPool. A range is split
+ * in half until it is small enough to play on one thread, so idle threads
+ * steal whatever halves are left and every core stays busy to the end,
+ * however unevenly long the games turn out.
+ *
+ * Games are seeded by Seeds, so two scenarios run from the same base seed
+ * are compared on the same games as far as their odds allow.
+ */
+public class SimulationTask
+    extends RecursiveTask<Distribution>
+{
+    private static final long serialVersionUID = 1L;
+
+    /** Below this many games a range is played rather than split */
+    private static final int  LEAF_GAMES       = 64;
+
+    private final Scenario    scenario;
+    private final long        baseSeed;
+    private final long        from;
+    private final long        to;
+
+
+    /**
+     * Create a new SimulationTask object.
+     *
+     * @param scenario
+     *            what to play
+     * @param baseSeed
+     *            the seed every game's seed is derived from
+     * @param from
+     *            the index of the first game to play
+     * @param to
+     *            the index just past the last game to play
+     */
+    public SimulationTask(Scenario scenario, long baseSeed, long from, long to)
+    {
+        this.scenario = scenario;
+        this.baseSeed = baseSeed;
+        this.from = from;
+        this.to = to;
+    }
+
+
+    @Override
+    protected Distribution compute()
+    {
+        if (to - from <= LEAF_GAMES)
+        {
+            return play();
+        }
+        long middle = (from + to) >>> 1;
+        SimulationTask left = new SimulationTask(scenario, baseSeed, from, middle);
+        left.fork();
+        Distribution result =
+            new SimulationTask(scenario, baseSeed, middle, to).compute();
+        result.addAll(left.join());
+        return result;
+    }
+
+
+    private Distribution play()
+    {
+        Distribution result = new Distribution();
+        Strategy strategy = Strategies.create(scenario.getStrategy());
+        Game game = null;
+        GameView view = null;
+        for (long i = from; i < to; i++)
+        {
+            long seed = Seeds.game(baseSeed, i);
+            if (game == null)
+            {
+                game =
+                    new Game(
+                        scenario.getCols(),
+                        scenario.getRows(),
+                        seed,
+                        scenario.getTable());
+                view = new GameView(game);
+            }
+            else
+            {
+                // plays exactly as a new game would, so a game's result
+                // doesn't depend on where in a range it fell
+                game.restart(seed);
+            }
+            strategy.reset(Seeds.strategy(seed));
+
+            boolean alive = true;
+            while (alive && game.getTick() < scenario.getMaxTicks())
+            {
+                alive = game.step(strategy.choose(view));
+            }
+
+            Snake snake = game.getSnake();
+            result.add(
+                game.score(),
+                snake.size(),
+                game.getTick(),
+                Math.max(snake.headValue(), snake.maxBoxValue()),
+                !alive);
+        }
+        return result;
+    }
+}
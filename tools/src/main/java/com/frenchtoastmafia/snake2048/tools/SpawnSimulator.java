@@ -0,0 +1,276 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.SpawnTable;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+// -------------------------------------------------------------------------
+/**
+ * Plays a grid of scripted games headlessly, on every core, and prints how
+ * they ended for each point of the grid: every strategy against every spawn
+ * table. Run with no arguments for the default table and all the strategies,
+ * or e.g.
+ *
+ * <pre>
+ * java -cp target/tools.jar com.frenchtoastmafia.snake2048.tools.SpawnSimulator \
+ *     --games 1000000 --strategies greedy \
+ *     --weights 7:5:3:1,8:5:2:1 --double 1/3,1/4
+ * </pre>
+ *
+ * Options, each taking a comma-separated list where it makes sense:
+ *
+ * <pre>
+ * --games N        games per grid point (100000)
+ * --board CxR      board size in cells (22x38, about a 1080p phone)
+ * --strategies a,b strategies to play (all of Strategies.NAMES)
+ * --values a:b:..  the value of each tier (2:4:8:16)
+ * --weights a:b:.. one weighting of the tiers per table (7:5:3:1)
+ * --gates a:b:..   one set of gates per table (0:2:4:8)
+ * --double n/d     odds of spawning two boxes per table (1/3)
+ * --max-ticks N    cut games off after this many ticks (100000)
+ * --seed N         base seed; the same seed plays the same games (1)
+ * --threads N      worker threads (all cores)
+ * --csv            print one CSV row per grid point instead of a report
+ * </pre>
+ */
+public class SpawnSimulator
+{
+    private SpawnSimulator()
+    {
+        // main only
+    }
+
+
+    /**
+     * @param args
+     *            the options above
+     */
+    public static void main(String[] args)
+    {
+        long games = 100000;
+        int cols = 22;
+        int rows = 38;
+        String[] strategies = Strategies.NAMES;
+        int[] values = { 2, 4, 8, 16 };
+        String[] weights = { "7:5:3:1" };
+        String[] gates = { "0:2:4:8" };
+        String[] doubles = { "1/3" };
+        long maxTicks = 100000;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean csv = false;
+        List<Scenario> grid = new ArrayList<Scenario>();
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                String option = args[i];
+                if (option.equals("--csv"))
+                {
+                    csv = true;
+                    continue;
+                }
+                if (i + 1 == args.length)
+                {
+                    throw new IllegalArgumentException(option
+                        + " needs a value");
+                }
+                String value = args[++i];
+                if (option.equals("--games"))
+                {
+                    games = Long.parseLong(value);
+                }
+                else if (option.equals("--board"))
+                {
+                    String[] size = value.split("x");
+                    cols = Integer.parseInt(size[0]);
+                    rows = Integer.parseInt(size[1]);
+                }
+                else if (option.equals("--strategies"))
+                {
+                    strategies = value.split(",");
+                }
+                else if (option.equals("--values"))
+                {
+                    values = ints(value);
+                }
+                else if (option.equals("--weights"))
+                {
+                    weights = value.split(",");
+                }
+                else if (option.equals("--gates"))
+                {
+                    gates = value.split(",");
+                }
+                else if (option.equals("--double"))
+                {
+                    doubles = value.split(",");
+                }
+                else if (option.equals("--max-ticks"))
+                {
+                    maxTicks = Long.parseLong(value);
+                }
+                else if (option.equals("--seed"))
+                {
+                    seed = Long.parseLong(value);
+                }
+                else if (option.equals("--threads"))
+                {
+                    threads = Integer.parseInt(value);
+                }
+                else
+                {
+                    throw new IllegalArgumentException("unknown option "
+                        + option);
+                }
+            }
+
+            for (String strategy : strategies)
+            {
+                for (String weighting : weights)
+                {
+                    for (String gating : gates)
+                    {
+                        for (String odds : doubles)
+                        {
+                            String[] fraction = odds.split("/");
+                            SpawnTable table =
+                                new SpawnTable(
+                                    values,
+                                    ints(weighting),
+                                    ints(gating),
+                                    Integer.parseInt(fraction[0]),
+                                    Integer.parseInt(fraction[1]));
+                            grid.add(new Scenario(strategy, table, cols, rows,
+                                maxTicks));
+                        }
+                    }
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            System.err.println(e.getMessage());
+            System.err.println("see the SpawnSimulator doc comment for usage");
+            System.exit(2);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        PrintStream out = System.out;
+        if (csv)
+        {
+            out.println("strategy,table,games,unfinished,score_mean,score_p10,"
+                + "score_p50,score_p90,score_p99,score_max,length_mean,"
+                + "length_p50,length_p90,length_max,ticks_mean,ticks_p50,"
+                + "max_tile_p50,max_tile_p90,seconds");
+        }
+        for (Scenario scenario : grid)
+        {
+            long start = System.nanoTime();
+            Distribution result =
+                pool.invoke(new SimulationTask(scenario, seed, 0, games));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (csv)
+            {
+                printRow(out, scenario, result, seconds);
+            }
+            else
+            {
+                printReport(out, scenario, result, seconds);
+            }
+        }
+        pool.shutdown();
+    }
+
+
+    private static void printReport(PrintStream out, Scenario scenario,
+        Distribution result, double seconds)
+    {
+        out.println(scenario);
+        out.println(String.format(Locale.US,
+            "  %d games in %.1f s (%.0f games/s), %d cut off at the tick limit",
+            result.games(), seconds, result.games() / seconds,
+            result.unfinished()));
+        printHistogram(out, "score", result.scores());
+        printHistogram(out, "length", result.lengths());
+        printHistogram(out, "ticks", result.ticks());
+
+        StringBuilder tiles = new StringBuilder("  max tile");
+        for (int exponent = 0; exponent < 32; exponent++)
+        {
+            long count = result.maxTileCount(exponent);
+            if (count > 0)
+            {
+                tiles.append(String.format(Locale.US, "  %d: %.2f%%",
+                    1L << exponent, 100.0 * count / result.games()));
+            }
+        }
+        out.println(tiles);
+        out.println();
+    }
+
+
+    private static void printHistogram(PrintStream out, String name,
+        Histogram histogram)
+    {
+        out.println(String.format(Locale.US,
+            "  %-8s mean %9.1f  p10 %7d  p50 %7d  p90 %7d  p99 %7d  max %7d",
+            name, histogram.mean(), histogram.percentile(0.1),
+            histogram.percentile(0.5), histogram.percentile(0.9),
+            histogram.percentile(0.99), histogram.max()));
+    }
+
+
+    private static void printRow(PrintStream out, Scenario scenario,
+        Distribution result, double seconds)
+    {
+        Histogram scores = result.scores();
+        Histogram lengths = result.lengths();
+        out.println(String.format(Locale.US,
+            "%s,\"%s\",%d,%d,%.2f,%d,%d,%d,%d,%d,%.2f,%d,%d,%d,%.1f,%d,%d,%d,%.2f",
+            scenario.getStrategy(), scenario.getTable(), result.games(),
+            result.unfinished(), scores.mean(), scores.percentile(0.1),
+            scores.percentile(0.5), scores.percentile(0.9),
+            scores.percentile(0.99), scores.max(), lengths.mean(),
+            lengths.percentile(0.5), lengths.percentile(0.9), lengths.max(),
+            result.ticks().mean(), result.ticks().percentile(0.5),
+            maxTilePercentile(result, 0.5), maxTilePercentile(result, 0.9),
+            seconds));
+    }
+
+
+    /**
+     * @return the largest tile reached by the given fraction of games or
+     *         fewer, e.g. the median largest tile for 0.5
+     */
+    private static long maxTilePercentile(Distribution result, double fraction)
+    {
+        long rank = Math.max(1, (long)Math.ceil(fraction * result.games()));
+        long seen = 0;
+        for (int exponent = 0; exponent < 32; exponent++)
+        {
+            seen += result.maxTileCount(exponent);
+            if (seen >= rank)
+            {
+                return 1L << exponent;
+            }
+        }
+        return 0;
+    }
+
+
+    private static int[] ints(String list)
+    {
+        String[] parts = list.split(":");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+        {
+            result[i] = Integer.parseInt(parts[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,272 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.Cells;
+import com.frenchtoastmafia.snake2048.engine.Direction;
+import com.frenchtoastmafia.snake2048.engine.GameRandom;
+import com.frenchtoastmafia.snake2048.engine.GameView;
+import com.frenchtoastmafia.snake2048.engine.Strategy;
+
+// -------------------------------------------------------------------------
+/**
+ * The scripted strategies the tools know, by name. None of them is a
+ * good player; between them they stand in for an aimless one, a jittery one
+ * and one that goes after merges, which is enough to see how a change to the
+ * spawn odds plays for each. None of them ever turns into a cell that would
+ * kill it if there is another way to go.
+ *
+ * <ul>
+ * <li>wander: goes straight, turning at random one tick in sixteen, or when
+ * going on would kill it</li>
+ * <li>random: as wander, but turns one tick in four</li>
+ * <li>greedy: heads for the nearest box with the same number as its head,
+ * then for the nearest smaller one, then for any box. If it goes a whole
+ * board's worth of ticks without eating, it is stuck circling something it
+ * can't get at, and wanders until it eats again.</li>
+ * <li>planner: searches ahead with a MonteCarloPlanner, 256 playouts a tick
+ * and up to 8 swipes deep. Hundreds of times slower than the others, so not
+ * one of the defaults.</li>
+ * </ul>
+ */
+public final class Strategies
+{
+    /** The scripted strategies, which the tools play unless told otherwise */
+    public static final String[] NAMES = { "wander", "random", "greedy" };
+
+
+    private Strategies()
+    {
+        // static factory only
+    }
+
+
+    /**
+     * @param name
+     *            one of NAMES, or "planner"
+     * @return a new instance of that strategy
+     * @throws IllegalArgumentException
+     *             if there is no strategy by that name
+     */
+    public static Strategy create(String name)
+    {
+        if (name.equals("wander"))
+        {
+            return new Wander(16);
+        }
+        else if (name.equals("random"))
+        {
+            return new Wander(4);
+        }
+        else if (name.equals("greedy"))
+        {
+            return new Greedy();
+        }
+        else if (name.equals("planner"))
+        {
+            return new MonteCarloPlanner(256, 8);
+        }
+        throw new IllegalArgumentException("no strategy called " + name);
+    }
+
+
+    /**
+     * @return true if the snake may go that way next tick: straight on, or a
+     *         turn Direction.canTurn() allows
+     */
+    static boolean isAllowed(GameView view, int direction)
+    {
+        int current = view.getMovingDirection();
+        return direction == current || Direction.canTurn(current, direction);
+    }
+
+
+    /**
+     * Looks one tick ahead, the way Game.step() will play it: the tail lets
+     * go of its cell before the head moves, and eating a box pushes the head
+     * one cell further.
+     *
+     * @return true if going that way next tick doesn't kill the snake
+     */
+    static boolean isSafe(GameView view, int direction)
+    {
+        int tail = view.tailCell();
+        int next = Cells.neighbour(view.headCell(), direction);
+        if (view.isOccupied(next) && next != tail)
+        {
+            return false;
+        }
+        if (view.boxValueAt(next) > 0)
+        {
+            int beyond = Cells.neighbour(next, direction);
+            return !view.isOccupied(beyond) || beyond == tail;
+        }
+        return true;
+    }
+
+
+    /**
+     * @return a random direction that is allowed and safe, or Direction.NONE
+     *         if there is none
+     */
+    static int randomSafeDirection(GameView view, GameRandom random)
+    {
+        int first = random.nextInt(4);
+        for (int i = 0; i < 4; i++)
+        {
+            int direction = (first + i) & 3;
+            if (isAllowed(view, direction) && isSafe(view, direction))
+            {
+                return direction;
+            }
+        }
+        return Direction.NONE;
+    }
+
+
+    // -------------------------------------------------------------------------
+    /**
+     * Straight on unless that is fatal, plus a random turn every so often.
+     */
+    private static class Wander
+        implements Strategy
+    {
+        private final GameRandom random = new GameRandom(0);
+        /** One tick in this many turns at random */
+        private final int        turnEvery;
+
+
+        Wander(int turnEvery)
+        {
+            this.turnEvery = turnEvery;
+        }
+
+
+        public void reset(long seed)
+        {
+            random.setSeed(seed);
+        }
+
+
+        public int choose(GameView view)
+        {
+            int current = view.getMovingDirection();
+            if (current == Direction.NONE
+                || random.nextInt(turnEvery) == 0
+                || !isSafe(view, current))
+            {
+                return randomSafeDirection(view, random);
+            }
+            return Direction.NONE;
+        }
+    }
+
+
+    // -------------------------------------------------------------------------
+    /**
+     * Heads for the most promising box, by plain grid distance.
+     */
+    private static class Greedy
+        implements Strategy
+    {
+        private final GameRandom random   = new GameRandom(0);
+        /** What to do while there is nothing to go for, or it is stuck */
+        private final Wander     fallback = new Wander(8);
+        /** The snake's size and score when it last ate, and when that was */
+        private int              lastSize;
+        private int              lastScore;
+        private long             lastAte;
+
+
+        public void reset(long seed)
+        {
+            random.setSeed(seed);
+            fallback.reset(seed);
+            // the game may not be starting from scratch, e.g. in a search;
+            // the first choose() takes whatever state it is in as the start
+            lastSize = -1;
+        }
+
+
+        public int choose(GameView view)
+        {
+            // eating always changes one or the other
+            if (view.snakeSize() != lastSize || view.score() != lastScore)
+            {
+                lastSize = view.snakeSize();
+                lastScore = view.score();
+                lastAte = view.getTick();
+            }
+
+            boolean stuck =
+                view.getTick() - lastAte > view.getCols() * view.getRows();
+            int target = stuck ? -1 : target(view);
+            if (target < 0)
+            {
+                return fallback.choose(view);
+            }
+
+            int best = Direction.NONE;
+            int bestDistance = Integer.MAX_VALUE;
+            int first = random.nextInt(4);
+            for (int i = 0; i < 4; i++)
+            {
+                int direction = (first + i) & 3;
+                if (!isAllowed(view, direction) || !isSafe(view, direction))
+                {
+                    continue;
+                }
+                int distance =
+                    distance(Cells.neighbour(view.headCell(), direction), target);
+                // keep going straight on a tie, so the snake doesn't zigzag
+                if (distance < bestDistance
+                    || (distance == bestDistance && direction == view
+                        .getMovingDirection()))
+                {
+                    best = direction;
+                    bestDistance = distance;
+                }
+            }
+            return best;
+        }
+
+
+        /**
+         * @return the cell of the box to go for, or -1 if there are none
+         */
+        private static int target(GameView view)
+        {
+            int head = view.headCell();
+            int headValue = view.headValue();
+            // a matching box beats any smaller one, which beats any bigger
+            // one, wherever they are
+            int far = view.getCols() + view.getRows();
+            int best = -1;
+            int bestCost = Integer.MAX_VALUE;
+            for (int i = 0; i < view.boxCount(); i++)
+            {
+                int value = view.boxValue(i);
+                int cost = distance(head, view.boxCell(i));
+                if (value < headValue)
+                {
+                    cost += far;
+                }
+                else if (value > headValue)
+                {
+                    cost += 2 * far;
+                }
+                if (cost < bestCost)
+                {
+                    best = view.boxCell(i);
+                    bestCost = cost;
+                }
+            }
+            return best;
+        }
+
+
+        private static int distance(int a, int b)
+        {
+            return Math.abs(Cells.col(a) - Cells.col(b))
+                + Math.abs(Cells.row(a) - Cells.row(b));
+        }
+    }
+}
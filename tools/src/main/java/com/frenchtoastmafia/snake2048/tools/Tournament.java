@@ -0,0 +1,285 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+// -------------------------------------------------------------------------
+/**
+ * Pits strategies against each other: every strategy plays the same set of
+ * seeds, on a work-stealing ForkJoinPool, and the tournament prints how each
+ * one scored, how often each beat each of the others on the same seed, and
+ * how fast the games went. The whole tournament is played once per thread
+ * count asked for, which shows how throughput scales with cores; the games
+ * are the same every time, so the standings must come out identical, and
+ * the run fails if they don't.
+ *
+ * <pre>
+ * java -cp target/tools.jar com.frenchtoastmafia.snake2048.tools.Tournament \
+ *     --strategies wander,random,greedy --games 100000 --threads 1,2,4,8
+ * </pre>
+ *
+ * Options:
+ *
+ * <pre>
+ * --strategies a,b strategies to play (all of Strategies.NAMES)
+ * --games N        seeds each strategy plays (10000)
+ * --board CxR      board size in cells (22x38)
+ * --max-ticks N    cut games off after this many ticks (100000)
+ * --seed N         base seed; the same seed plays the same games (1)
+ * --threads a,b    thread counts to play with (1, 2, 4, ... up to all cores)
+ * </pre>
+ */
+public class Tournament
+{
+    private Tournament()
+    {
+        // main only
+    }
+
+
+    /**
+     * @param args
+     *            the options above
+     */
+    public static void main(String[] args)
+    {
+        String[] strategies = Strategies.NAMES;
+        int games = 10000;
+        int cols = 22;
+        int rows = 38;
+        long maxTicks = 100000;
+        long seed = 1;
+        int[] threads = defaultThreads();
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                String option = args[i];
+                if (i + 1 == args.length)
+                {
+                    throw new IllegalArgumentException(option
+                        + " needs a value");
+                }
+                String value = args[++i];
+                if (option.equals("--strategies"))
+                {
+                    strategies = value.split(",");
+                }
+                else if (option.equals("--games"))
+                {
+                    games = Integer.parseInt(value);
+                }
+                else if (option.equals("--board"))
+                {
+                    String[] size = value.split("x");
+                    cols = Integer.parseInt(size[0]);
+                    rows = Integer.parseInt(size[1]);
+                }
+                else if (option.equals("--max-ticks"))
+                {
+                    maxTicks = Long.parseLong(value);
+                }
+                else if (option.equals("--seed"))
+                {
+                    seed = Long.parseLong(value);
+                }
+                else if (option.equals("--threads"))
+                {
+                    String[] counts = value.split(",");
+                    threads = new int[counts.length];
+                    for (int t = 0; t < counts.length; t++)
+                    {
+                        threads[t] = Integer.parseInt(counts[t]);
+                    }
+                }
+                else
+                {
+                    throw new IllegalArgumentException("unknown option "
+                        + option);
+                }
+            }
+            for (String strategy : strategies)
+            {
+                // fail here rather than on a worker thread
+                Strategies.create(strategy);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            System.err.println(e.getMessage());
+            System.err.println("see the Tournament doc comment for usage");
+            System.exit(2);
+        }
+
+        PrintStream out = System.out;
+        out.println(String.format(Locale.US,
+            "%d strategies x %d seeds on %dx%d, base seed %d",
+            strategies.length, games, cols, rows, seed));
+        out.println();
+
+        // a short untimed round first, so the JIT has compiled the engine
+        // before the first timed run and that run isn't unfairly slow
+        int warmup = Math.min(games, 1000);
+        ForkJoinPool warmupPool = new ForkJoinPool(threads[0]);
+        warmupPool.invoke(new TournamentTask(strategies, cols, rows, maxTicks,
+            seed, new int[strategies.length][warmup], 0, warmup));
+        warmupPool.shutdown();
+
+        int[][] standings = null;
+        long gamesPlayed = (long)games * strategies.length;
+        double baseline = 0;
+        List<String> scaling = new ArrayList<String>();
+        for (int count : threads)
+        {
+            int[][] scores = new int[strategies.length][games];
+            ForkJoinPool pool = new ForkJoinPool(count);
+            long start = System.nanoTime();
+            long ticks =
+                pool.invoke(new TournamentTask(strategies, cols, rows,
+                    maxTicks, seed, scores, 0, games));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            pool.shutdown();
+
+            if (standings == null)
+            {
+                standings = scores;
+            }
+            else if (!Arrays.deepEquals(standings, scores))
+            {
+                throw new IllegalStateException("the games came out "
+                    + "differently on " + count + " threads");
+            }
+
+            double rate = gamesPlayed / seconds;
+            if (baseline == 0)
+            {
+                // per-core speedup is measured against the first run
+                baseline = rate / count;
+            }
+            scaling.add(String.format(Locale.US,
+                "  %7d %9.2f %10.0f %12.0f %8.2fx %8.0f%%",
+                count, seconds, rate, ticks / seconds, rate / baseline,
+                100 * rate / baseline / count));
+        }
+
+        printStandings(out, strategies, standings);
+        out.println();
+        printHeadToHead(out, strategies, standings);
+        out.println();
+        out.println("  threads   seconds    games/s      ticks/s  speedup  per core");
+        for (String line : scaling)
+        {
+            out.println(line);
+        }
+    }
+
+
+    private static void printStandings(PrintStream out, String[] strategies,
+        int[][] scores)
+    {
+        int games = scores[0].length;
+        int[] wins = new int[strategies.length];
+        for (int i = 0; i < games; i++)
+        {
+            // the strict best score on a seed wins it; a tie wins nothing
+            int best = 0;
+            boolean tied = false;
+            for (int s = 1; s < strategies.length; s++)
+            {
+                if (scores[s][i] > scores[best][i])
+                {
+                    best = s;
+                    tied = false;
+                }
+                else if (scores[s][i] == scores[best][i])
+                {
+                    tied = true;
+                }
+            }
+            if (!tied)
+            {
+                wins[best]++;
+            }
+        }
+
+        out.println("  strategy         mean      p10      p50      p90      max     wins");
+        for (int s = 0; s < strategies.length; s++)
+        {
+            Histogram histogram = new Histogram();
+            for (int i = 0; i < games; i++)
+            {
+                histogram.add(scores[s][i]);
+            }
+            out.println(String.format(Locale.US,
+                "  %-10s %10.1f %8d %8d %8d %8d %7.1f%%",
+                strategies[s], histogram.mean(), histogram.percentile(0.1),
+                histogram.percentile(0.5), histogram.percentile(0.9),
+                histogram.max(), 100.0 * wins[s] / games));
+        }
+    }
+
+
+    private static void printHeadToHead(PrintStream out, String[] strategies,
+        int[][] scores)
+    {
+        int games = scores[0].length;
+        StringBuilder header = new StringBuilder("  row beat column on");
+        for (String strategy : strategies)
+        {
+            header.append(String.format(Locale.US, " %10s", strategy));
+        }
+        out.println(header);
+        for (int a = 0; a < strategies.length; a++)
+        {
+            StringBuilder line =
+                new StringBuilder(String.format(Locale.US, "  %-18s",
+                    strategies[a]));
+            for (int b = 0; b < strategies.length; b++)
+            {
+                if (a == b)
+                {
+                    line.append(String.format(Locale.US, " %10s", "-"));
+                    continue;
+                }
+                int beat = 0;
+                for (int i = 0; i < games; i++)
+                {
+                    if (scores[a][i] > scores[b][i])
+                    {
+                        beat++;
+                    }
+                }
+                line.append(String.format(Locale.US, " %9.1f%%", 100.0
+                    * beat / games));
+            }
+            out.println(line);
+        }
+    }
+
+
+    /**
+     * @return 1, 2, 4, ... up to the number of cores, and the number of
+     *         cores itself if that isn't a power of two
+     */
+    private static int[] defaultThreads()
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<Integer>();
+        for (int count = 1; count < cores; count *= 2)
+        {
+            counts.add(count);
+        }
+        counts.add(cores);
+        int[] result = new int[counts.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+}
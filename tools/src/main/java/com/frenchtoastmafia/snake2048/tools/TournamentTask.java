@@ -0,0 +1,132 @@
+package com.frenchtoastmafia.snake2048.tools;
+
+import com.frenchtoastmafia.snake2048.engine.Game;
+import com.frenchtoastmafia.snake2048.engine.GameView;
+import com.frenchtoastmafia.snake2048.engine.Strategy;
+import java.util.concurrent.RecursiveTask;
+
+// -------------------------------------------------------------------------
+/**
+ * Plays a range of a tournament's seeds on a ForkJoinPool: every strategy
+ * plays every seed in the range, and its final score goes in its row of the
+ * score table, in the seed's column. Ranges are split in half until they are
+ * small enough to play on one thread, and the pool's idle threads steal the
+ * halves that are left. No two tasks write the same slot of the table, and
+ * join() makes each task's writes visible to the one that forked it.
+ */
+public class TournamentTask
+    extends RecursiveTask<Long>
+{
+    private static final long serialVersionUID = 1L;
+
+    /** Below this many seeds a range is played rather than split */
+    private static final int  LEAF_SEEDS       = 16;
+
+    private final String[]    strategies;
+    private final int         cols;
+    private final int         rows;
+    private final long        maxTicks;
+    private final long        baseSeed;
+    private final int[][]     scores;
+    private final int         from;
+    private final int         to;
+
+
+    /**
+     * Create a new TournamentTask object.
+     *
+     * @param strategies
+     *            the names of the strategies that play, from Strategies.NAMES
+     * @param cols
+     *            the width of the board in cells
+     * @param rows
+     *            the height of the board in cells
+     * @param maxTicks
+     *            games still going after this many ticks are cut off
+     * @param baseSeed
+     *            the seed every game's seed is derived from
+     * @param scores
+     *            a row per strategy and a column per seed, for the results
+     * @param from
+     *            the index of the first seed to play
+     * @param to
+     *            the index just past the last seed to play
+     */
+    public TournamentTask(
+        String[] strategies,
+        int cols,
+        int rows,
+        long maxTicks,
+        long baseSeed,
+        int[][] scores,
+        int from,
+        int to)
+    {
+        this.strategies = strategies;
+        this.cols = cols;
+        this.rows = rows;
+        this.maxTicks = maxTicks;
+        this.baseSeed = baseSeed;
+        this.scores = scores;
+        this.from = from;
+        this.to = to;
+    }
+
+
+    /**
+     * @return how many ticks were played in all
+     */
+    @Override
+    protected Long compute()
+    {
+        if (to - from <= LEAF_SEEDS)
+        {
+            return play();
+        }
+        int middle = (from + to) >>> 1;
+        TournamentTask left = split(from, middle);
+        left.fork();
+        long ticks = split(middle, to).compute();
+        return ticks + left.join();
+    }
+
+
+    private TournamentTask split(int start, int end)
+    {
+        return new TournamentTask(strategies, cols, rows, maxTicks, baseSeed,
+            scores, start, end);
+    }
+
+
+    private long play()
+    {
+        Strategy[] players = new Strategy[strategies.length];
+        for (int s = 0; s < players.length; s++)
+        {
+            players[s] = Strategies.create(strategies[s]);
+        }
+        Game game = new Game(cols, rows, 0);
+        GameView view = new GameView(game);
+
+        long ticks = 0;
+        for (int i = from; i < to; i++)
+        {
+            long seed = Seeds.game(baseSeed, i);
+            for (int s = 0; s < players.length; s++)
+            {
+                // a restarted game spawns exactly as a new one would, so
+                // every strategy faces the same boxes on the same seed
+                game.restart(seed);
+                players[s].reset(Seeds.strategy(seed));
+                while (game.getTick() < maxTicks
+                    && game.step(players[s].choose(view)))
+                {
+                    // keep playing
+                }
+                scores[s][i] = game.score();
+                ticks += game.getTick();
+            }
+        }
+        return ticks;
+    }
+}